@@ -0,0 +1,99 @@
+package com.github.rpc0.client;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Growable ring of request ids and their deadlines in order of addition, which is the order of the deadlines
+ * as long as every request has the same timeout, but for the calls written out of the order they were made.
+ * The requests answered already are dropped when the ring is full, so it grows with the pending requests only.
+ * <p>
+ * Not thread-safe, confined to the event loop of a connection.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+final class DeadlineQueue {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final LongPredicate pending;
+  private long[] requestIds = new long[INITIAL_CAPACITY];
+  private long[] deadlines = new long[INITIAL_CAPACITY];
+  private int head = 0;
+  private int size = 0;
+
+  DeadlineQueue(LongPredicate pending) {
+    this.pending = pending;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void add(long requestId, long deadline) {
+    if (size == requestIds.length) {
+      retainPending();
+      // grown only while mostly pending, so each compaction is paid by as many additions
+      if (size > requestIds.length >> 1) {
+        grow();
+      }
+    }
+    int tail = (head + size) & (requestIds.length - 1);
+    requestIds[tail] = requestId;
+    deadlines[tail] = deadline;
+    ++size;
+  }
+
+  long peekRequestId() {
+    return requestIds[head];
+  }
+
+  long peekDeadline() {
+    return deadlines[head];
+  }
+
+  void remove() {
+    head = (head + 1) & (requestIds.length - 1);
+    --size;
+  }
+
+  void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  // keeps the order of the pending requests, moved towards the head
+  private void retainPending() {
+    int mask = requestIds.length - 1;
+    int kept = 0;
+    for (int i = 0; i < size; ++i) {
+      int from = (head + i) & mask;
+      if (pending.test(requestIds[from])) {
+        int to = (head + kept) & mask;
+        requestIds[to] = requestIds[from];
+        deadlines[to] = deadlines[from];
+        ++kept;
+      }
+    }
+    size = kept;
+  }
+
+  // unrolls the ring to the front of arrays twice as long
+  private void grow() {
+    int capacity = requestIds.length;
+    long[] newRequestIds = new long[capacity << 1];
+    long[] newDeadlines = new long[capacity << 1];
+    int firstPart = capacity - head;
+    System.arraycopy(requestIds, head, newRequestIds, 0, firstPart);
+    System.arraycopy(requestIds, 0, newRequestIds, firstPart, head);
+    System.arraycopy(deadlines, head, newDeadlines, 0, firstPart);
+    System.arraycopy(deadlines, 0, newDeadlines, firstPart, head);
+    requestIds = newRequestIds;
+    deadlines = newDeadlines;
+    head = 0;
+  }
+}
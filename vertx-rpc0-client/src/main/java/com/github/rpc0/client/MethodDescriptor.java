@@ -0,0 +1,66 @@
+package com.github.rpc0.client;
+
+import com.google.common.base.Strings;
+import com.github.rpc0.invoke.MethodTable;
+import com.github.rpc0.reflection.ReflectionUtil;
+import io.vertx.core.Future;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Everything a call of a service method needs from reflection, resolved once per {@link Method}.
+ *
+ * @author fishzhao
+ * @since 2022-03-12
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class MethodDescriptor {
+
+  private final String serviceName;
+  private final String methodName;
+  // resolved from the generic return type
+  private final Class<?> resultType;
+  private final MethodType methodType;
+  // key of the method in the negotiated MethodTable
+  private final String signature;
+  // completed once written, without awaiting a result
+  private final boolean oneWay;
+
+  static MethodDescriptor of(Method method, boolean oneWay) {
+    if (method.getReturnType() != Future.class) {
+      throw new UnsupportedOperationException(
+              Strings.lenientFormat(
+                      "The return raw type of method \"%s\" must be : %s",
+                      method,
+                      Future.class
+              )
+      );
+    }
+    String serviceName = method.getDeclaringClass().getTypeName();
+    Class<?> resultType = ReflectionUtil.getFutureResultType(method.getGenericReturnType());
+    if (oneWay && resultType != Void.class) {
+      throw new UnsupportedOperationException(
+              Strings.lenientFormat(
+                      "The one-way method \"%s\" must return : %s<%s>",
+                      method,
+                      Future.class,
+                      Void.class
+              )
+      );
+    }
+    MethodType methodType = MethodType.methodType(resultType, method.getParameterTypes());
+    return new MethodDescriptor(
+            serviceName,
+            method.getName(),
+            resultType,
+            methodType,
+            MethodTable.signatureOf(serviceName, method.getName(), methodType),
+            oneWay
+    );
+  }
+}
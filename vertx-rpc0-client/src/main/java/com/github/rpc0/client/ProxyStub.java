@@ -1,28 +1,41 @@
 package com.github.rpc0.client;
 
+import com.github.rpc0.invoke.Cancel;
+import com.github.rpc0.invoke.Handshake;
 import com.github.rpc0.invoke.InvokeResult;
 import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.MethodTable;
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.transport.MarkedLenFrameDecoder;
 import com.github.rpc0.transport.MarkedLenMessageHandler;
+import com.github.rpc0.transport.MessageExchange;
 import com.github.rpc0.transport.MessageTransport;
 import com.github.rpc0.transport.ParserHandler;
-import com.github.rpc0.transport.Prefix;
+import com.google.common.base.Strings;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
-import io.netty.util.Timer;
+import io.netty.util.internal.PlatformDependent;
 import io.vertx.core.Closeable;
-import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.VertxException;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.impl.NetSocketInternal;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -30,22 +43,53 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * @author fishzhao
  * @since 2021-12-16
  */
+@Slf4j
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 final class ProxyStub implements ParserHandler, Closeable {
 
+  // bounds a drain, so a flood of requests does not starve the reads of the event loop
+  private static final int MAX_DRAIN_BATCH = 256;
+  private static final long MAX_EXPIRY_TICK_MILLIS = 100;
+
   private final AtomicBoolean closed = new AtomicBoolean(false);
-  private final ConcurrentMap<Long, Promise<InvokeResult>> resultMap = new ConcurrentHashMap<>();
+  // touched by the event loop only, written requests awaiting their results
+  private final TLongObjectMap<Submission> resultMap = new TLongObjectHashMap<>();
+  // size of the resultMap for other threads, written by the event loop only
+  private volatile int inFlight;
+  // touched by the event loop only, like the method table
+  private final Map<MethodDescriptor, Integer> methodIdCache = new HashMap<>();
+  // requests submitted by any thread, serialized and written by the event loop only
+  private final Queue<Submission> submissions = PlatformDependent.newMpscQueue();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+  private final Runnable drainTask = this::drain;
+  // deadlines of the written requests, expired by a tick scheduled on the event loop while any is pending
+  private final DeadlineQueue deadlines = new DeadlineQueue(resultMap::containsKey);
+  private final Runnable expiryTask = this::expire;
+  private ScheduledFuture<?> expiryTick;
   private final NetSocketInternal socket;
   private final MessageTransport messageTransport;
-  private final Timer timer;
   private final Duration timeout;
+  private final boolean nativeFrameDecoder;
+  private MethodTable methodTable;
+  // announced by the handshake of the server, touched by the event loop only like the method table
+  private int serverFeatures;
+  // assigned by the event loop on writing, so the request ids are unique per connection
+  private long lastRequestId;
 
   boolean isClosed() {
     return closed.get();
   }
 
+  int pendingRequests() {
+    return inFlight + submissions.size();
+  }
+
   void registerHandlers(Runnable dispose) {
-    socket.handler(new MarkedLenMessageHandler(this));
+    if (nativeFrameDecoder) {
+      MarkedLenFrameDecoder.install(socket, this);
+    } else {
+      socket.handler(new MarkedLenMessageHandler(this));
+    }
     socket.closeHandler(v -> {
       cleanup(new VertxException("Connection closed!", true));
       if (dispose != null) {
@@ -57,45 +101,181 @@ final class ProxyStub implements ParserHandler, Closeable {
     });
   }
 
-  Future<InvokeResult> call(InvokeSpec invokeSpec) {
-    Promise<InvokeResult> promise = Promise.promise();
+  void handshake() {
+    ByteBuf request;
+    try {
+      request = messageTransport
+              .serializeFrame(socket.channelHandlerContext().alloc(),
+                      new Handshake(System.currentTimeMillis(), Handshake.UNTAGGED_RESULTS));
+    } catch (Exception e) {
+      log.warn("Handshake with [{}] failed, fallback to method names: ", socket.remoteAddress(), e);
+      return;
+    }
+    socket.write(Buffer.buffer(request));
+  }
+
+  private boolean serverSupports(int feature) {
+    return (serverFeatures & feature) == feature;
+  }
+
+  /**
+   * @return the method id negotiated on this connection, or {@link InvokeSpec#NO_METHOD_ID} before handshake
+   */
+  private int methodIdOf(MethodDescriptor descriptor) {
+    MethodTable table = methodTable;
+    if (table == null) {
+      return InvokeSpec.NO_METHOD_ID;
+    }
+    // keyed by identity, a descriptor is unique per method of the factory
+    Integer methodId = methodIdCache.get(descriptor);
+    if (methodId == null) {
+      methodId = table.methodIdOf(descriptor.getSignature());
+      methodIdCache.put(descriptor, methodId);
+    }
+    return methodId;
+  }
+
+  /**
+   * Submit a call, {@code promise} is completed with the result of the expected type or failed.
+   */
+  void call(MethodDescriptor descriptor, ParameterArray parameters, Promise<Object> promise) {
     if (isClosed()) {
-      promise.fail("Connection already closed!");
-      return promise.future();
+      promise.tryFail("Connection already closed!");
+      return;
+    }
+    Submission submission = new Submission(descriptor, parameters, promise);
+    ChannelHandlerContext ctx = socket.channelHandlerContext();
+    // already on the event loop, written at once unless the submissions of other threads are ahead
+    if (ctx.executor().inEventLoop() && submissions.isEmpty()) {
+      if (write(ctx, submission)) {
+        ctx.flush();
+      }
+      return;
+    }
+    submissions.offer(submission);
+    if (drainScheduled.compareAndSet(false, true)) {
+      try {
+        ctx.executor().execute(drainTask);
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false);
+        failSubmissions(e);
+      }
+    }
+  }
+
+  // On the event loop, the queued requests are written and flushed at once
+  private void drain() {
+    drainScheduled.set(false);
+    ChannelHandlerContext ctx = socket.channelHandlerContext();
+    int written = 0;
+    Submission submission;
+    while (written < MAX_DRAIN_BATCH && (submission = submissions.poll()) != null) {
+      if (write(ctx, submission)) {
+        ++written;
+      }
+    }
+    if (written > 0) {
+      ctx.flush();
+    }
+    if (!submissions.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      ctx.executor().execute(drainTask);
     }
+  }
+
+  private boolean write(ChannelHandlerContext ctx, Submission submission) {
+    MethodDescriptor descriptor = submission.descriptor;
+    // awaits the result like any call unless the server announced one-way requests
+    boolean oneWay = descriptor.isOneWay() && serverSupports(Handshake.ONE_WAY);
+    long requestId = oneWay ? InvokeSpec.ONE_WAY_REQUEST_ID : ++lastRequestId;
+    // the server sheds the request once the client would have given up, the budget left is sent
+    InvokeSpec invokeSpec = new InvokeSpec(
+            requestId,
+            System.currentTimeMillis(),
+            submission.deadlineMillis,
+            descriptor.getServiceName(),
+            descriptor.getMethodName(),
+            descriptor.getMethodType(),
+            methodIdOf(descriptor),
+            submission.parameters
+    );
     ByteBuf request;
     try {
-      request = Prefix.prependTo(messageTransport
-              .serialize(socket.channelHandlerContext().alloc(), invokeSpec));
+      request = messageTransport.serializeFrame(ctx.alloc(), invokeSpec, serverFeatures);
     } catch (Exception e) {
-      promise.fail(e);
-      return promise.future();
-    }
-    long requestId = invokeSpec.getRequestId();
-    Promise<InvokeResult> old = resultMap.put(requestId, promise);
-    if (old != null) {
-      old.tryFail("Duplicated requestId: " + request);
-    }
-    socket.write(Buffer.buffer(request), result -> {
-      if (result.succeeded()) {
-        registerTimeout(requestId);
-      } else {
-        resultMap.remove(requestId);
-        promise.tryFail(result.cause());
-      }
-    });
-    return promise.future();
+      submission.promise.tryFail(e);
+      return false;
+    }
+    submission.written(requestId);
+    // a one-way call is neither pending nor timed out, its write completes it
+    if (!oneWay) {
+      resultMap.put(requestId, submission);
+      inFlight = resultMap.size();
+      deadlines.add(requestId, submission.deadlineNanos);
+      scheduleExpiry(ctx);
+    }
+    ctx.write(request).addListener(submission);
+    return true;
+  }
+
+  private void failSubmissions(Throwable cause) {
+    Submission submission;
+    while ((submission = submissions.poll()) != null) {
+      submission.promise.tryFail(cause);
+    }
   }
 
-  private void registerTimeout(long requestId) {
-    if (resultMap.containsKey(requestId)) {
-      timer.newTimeout(timeout -> {
-        Promise<InvokeResult> promise = resultMap.remove(requestId);
-        if (promise != null) {
-          promise.tryFail("Timeout");
+  private Submission remove(long requestId) {
+    Submission submission = resultMap.remove(requestId);
+    if (submission != null) {
+      inFlight = resultMap.size();
+    }
+    return submission;
+  }
+
+  private void scheduleExpiry(ChannelHandlerContext ctx) {
+    if (expiryTick == null && !deadlines.isEmpty()) {
+      long tickMillis = Math.max(1L, Math.min(MAX_EXPIRY_TICK_MILLIS, timeout.toMillis() / 10));
+      expiryTick = ctx.executor().schedule(expiryTask, tickMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void expire() {
+    expiryTick = null;
+    ChannelHandlerContext ctx = socket.channelHandlerContext();
+    long now = System.nanoTime();
+    boolean cancellation = serverSupports(Handshake.CANCELLATION);
+    int cancelled = 0;
+    while (!deadlines.isEmpty()) {
+      long requestId = deadlines.peekRequestId();
+      // a request answered already leaves the front whatever its deadline
+      if (resultMap.containsKey(requestId)) {
+        if (deadlines.peekDeadline() - now > 0) {
+          break;
+        }
+        remove(requestId).promise.tryFail("Timeout");
+        if (cancellation && cancel(ctx, requestId)) {
+          ++cancelled;
         }
-      }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+      }
+      deadlines.remove();
+    }
+    if (cancelled > 0) {
+      ctx.flush();
     }
+    scheduleExpiry(ctx);
+  }
+
+  // tells the server to drop the request given up, best effort
+  private boolean cancel(ChannelHandlerContext ctx, long requestId) {
+    ByteBuf frame;
+    try {
+      frame = messageTransport.serializeFrame(ctx.alloc(), new Cancel(requestId));
+    } catch (Exception e) {
+      log.debug("Failed to cancel request {} on [{}]: ", requestId, socket.remoteAddress(), e);
+      return false;
+    }
+    ctx.write(frame, ctx.voidPromise());
+    return true;
   }
 
   @Override
@@ -107,16 +287,48 @@ final class ProxyStub implements ParserHandler, Closeable {
   public void handle(Buffer buffer) {
     ByteBuf byteBuf = buffer.getByteBuf();
     try {
-      InvokeResult result = (InvokeResult) messageTransport.deserialize(byteBuf);
-      Promise<InvokeResult> promise = resultMap.remove(result.getRequestId());
-      if (promise != null) {
-        promise.tryComplete(result);
+      MessageExchange message = messageTransport.deserialize(byteBuf, this::resultTypeOf);
+      if (message instanceof Handshake) {
+        serverFeatures = ((Handshake) message).getFeatures();
+        return;
+      }
+      if (message instanceof MethodTable) {
+        methodTable = (MethodTable) message;
+        log.debug("Negotiated {} method ids with: {}", methodTable.size(), socket.remoteAddress());
+        return;
+      }
+      InvokeResult result = (InvokeResult) message;
+      Submission submission = remove(result.getRequestId());
+      if (submission != null) {
+        complete(submission.promise, submission.descriptor.getResultType(), result);
       }
     } finally {
       ReferenceCountUtil.release(byteBuf);
     }
   }
 
+  // the result of an expected type completes the promise of the caller, otherwise fails it
+  static void complete(Promise<Object> promise, Class<?> resultType, InvokeResult result) {
+    if (result.getCode() != ResultCode.OK) {
+      promise.tryFail(result.getErrorMessage());
+      return;
+    }
+    Object o = result.getResult();
+    if (o == null || resultType.isInstance(o)) {
+      promise.tryComplete(o);
+    } else {
+      promise.tryFail(Strings.lenientFormat("Mismatch result type, required: %s, but found: %s",
+              resultType,
+              o.getClass()));
+    }
+  }
+
+  private Class<?> resultTypeOf(long requestId) {
+    Submission submission = resultMap.get(requestId);
+    // a result of a final type is read without its class
+    return submission != null ? submission.descriptor.getResultType() : null;
+  }
+
   @Override
   public void close(Promise<Void> completion) {
     if (closed.compareAndSet(false, true)) {
@@ -127,10 +339,59 @@ final class ProxyStub implements ParserHandler, Closeable {
   }
 
   private void cleanup(Throwable cause) {
-    List<Promise<?>> promises = new ArrayList<>(resultMap.values());
+    failSubmissions(cause);
+    Submission[] pending = resultMap.values(new Submission[resultMap.size()]);
     resultMap.clear();
-    for (Promise<?> promise : promises) {
-      promise.tryFail(cause);
+    inFlight = 0;
+    deadlines.clear();
+    if (expiryTick != null) {
+      expiryTick.cancel(false);
+      expiryTick = null;
+    }
+    for (Submission submission : pending) {
+      submission.promise.tryFail(cause);
+    }
+  }
+
+  // listens to its own write, so a call allocates no listener
+  private final class Submission implements ChannelFutureListener {
+
+    private final MethodDescriptor descriptor;
+    // the promise of the caller, completed by the event loop
+    private final Promise<Object> promise;
+    // the timeout runs from the call, the wait for the write included
+    private final long deadlineMillis;
+    private final long deadlineNanos;
+    // dropped once written, a pending request does not hold its parameters
+    private ParameterArray parameters;
+    private long requestId;
+
+    private Submission(MethodDescriptor descriptor, ParameterArray parameters, Promise<Object> promise) {
+      this.descriptor = descriptor;
+      this.parameters = parameters;
+      this.promise = promise;
+      this.deadlineMillis = System.currentTimeMillis() + timeout.toMillis();
+      this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    private void written(long requestId) {
+      this.requestId = requestId;
+      parameters = null;
+    }
+
+    @Override
+    public void operationComplete(ChannelFuture future) {
+      boolean oneWay = requestId == InvokeSpec.ONE_WAY_REQUEST_ID;
+      if (future.isSuccess()) {
+        if (oneWay) {
+          promise.tryComplete(null);
+        }
+        return;
+      }
+      if (!oneWay) {
+        remove(requestId);
+      }
+      promise.tryFail(future.cause());
     }
   }
 }
@@ -1,22 +1,17 @@
 package com.github.rpc0.client;
 
-import com.google.common.base.Strings;
-import com.github.rpc0.invoke.InvokeResult;
-import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.annotation.OneWay;
 import com.github.rpc0.invoke.ParameterArray;
-import com.github.rpc0.invoke.ResultCode;
-import com.github.rpc0.reflection.ReflectionUtil;
-import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.impl.VertxInternal;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 
 /**
@@ -26,48 +21,40 @@ import java.util.function.Supplier;
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 final class ProxyStubInvocationHandler implements InvocationHandler {
 
-  private static final AtomicLong ID_GENERATOR = new AtomicLong(0);
-
   private final VertxInternal vertxInternal;
   private final Supplier<Future<ProxyStub>> proxyStubSupplier;
+  // shared by all proxies of the factory
+  private final ConcurrentMap<Method, MethodDescriptor> methodDescriptors;
+  // registered to the builder, in addition to the methods annotated with @OneWay
+  private final Set<Method> oneWayMethods;
 
-  private void checkMethodReturnType(Method method) {
-    if (method.getReturnType() != Future.class) {
-      throw new UnsupportedOperationException(
-              Strings.lenientFormat(
-                      "The return raw type of method \"%s\" must be : %s",
-                      method,
-                      Future.class
-              )
-      );
+  MethodDescriptor descriptorOf(Method method) {
+    MethodDescriptor descriptor = methodDescriptors.get(method);
+    if (descriptor == null) {
+      descriptor = methodDescriptors.computeIfAbsent(method, key -> MethodDescriptor.of(key,
+              key.isAnnotationPresent(OneWay.class) || oneWayMethods.contains(key)));
     }
+    return descriptor;
   }
 
   @SuppressWarnings("SuspiciousInvocationHandlerImplementation")
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) {
-    checkMethodReturnType(method);
-    Class<?> actualReturnType = ReflectionUtil.getFutureResultType(method.getGenericReturnType());
-    InvokeSpec invokeSpec = buildInvokeSpec(
-            method,
-            actualReturnType,
-            args
-    );
+    // the array is created by the proxy for this call only
+    return call(descriptorOf(method), ParameterArray.wrap(args));
+  }
+
+  Future<Object> call(MethodDescriptor descriptor, ParameterArray parameters) {
+    // the only promise of the call, completed by the proxy stub on its event loop
     Promise<Object> promise = vertxInternal.promise();
     Future<ProxyStub> proxyStubFuture = proxyStubSupplier.get();
     // optimize for performance
     if (proxyStubFuture.succeeded()) {
-      proxyStubFuture.result()
-              .call(invokeSpec)
-              .onComplete(result ->
-                      handleResult(result, promise, actualReturnType));
+      proxyStubFuture.result().call(descriptor, parameters, promise);
     } else {
       proxyStubFuture.onComplete(stubResult -> {
         if (stubResult.succeeded()) {
-          proxyStubFuture.result()
-                  .call(invokeSpec)
-                  .onComplete(result ->
-                          handleResult(result, promise, actualReturnType));
+          stubResult.result().call(descriptor, parameters, promise);
         } else {
           promise.tryFail(stubResult.cause());
         }
@@ -75,41 +62,4 @@ final class ProxyStubInvocationHandler implements InvocationHandler {
     }
     return promise.future();
   }
-
-  private void handleResult(AsyncResult<InvokeResult> result,
-                            Promise<Object> promise,
-                            Class<?> actualReturnType) {
-    if (result.succeeded()) {
-      InvokeResult invokeResult = result.result();
-      if (invokeResult.getCode() == ResultCode.OK) {
-        Object o = invokeResult.getResult();
-        if (o == null || actualReturnType.isInstance(o)) {
-          promise.complete(o);
-        } else {
-          promise.tryFail(Strings.lenientFormat("Mismatch result type, required: %s, but found: %s",
-                  actualReturnType,
-                  o.getClass()));
-        }
-      } else {
-        promise.tryFail(invokeResult.getErrorMessage());
-      }
-    } else {
-      promise.tryFail(result.cause());
-    }
-  }
-
-
-  private InvokeSpec buildInvokeSpec(Method method,
-                                     Class<?> actualReturnType,
-                                     Object[] args) {
-    ParameterArray parameters = ParameterArray.create(args);
-    return new InvokeSpec(
-            ID_GENERATOR.incrementAndGet(),
-            System.currentTimeMillis(),
-            method.getDeclaringClass().getTypeName(),
-            method.getName(),
-            MethodType.methodType(actualReturnType, method.getParameterTypes()),
-            parameters
-    );
-  }
 }
@@ -1,115 +1,128 @@
 package com.github.rpc0.client;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.base.Preconditions;
 import com.github.rpc0.transport.MessageTransport;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timer;
+import io.netty.channel.EventLoop;
 import io.vertx.core.Closeable;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.impl.ContextInternal;
 import io.vertx.core.net.NetClient;
 import io.vertx.core.net.NetSocket;
 import io.vertx.core.net.impl.NetSocketInternal;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 /**
+ * A pool of connections to one endpoint, each connection lives on the event loop of its own context.
+ * The connected {@link ProxyStub} with the least pending requests is supplied,
+ * a disposed connection is replaced in background while the others keep serving.
+ * <p>
+ * With event loop affinity, a call made on an event loop goes through the connection of that loop,
+ * so the request is written and the result is completed without leaving the thread of the caller,
+ * other calls are spread round-robin.
+ *
  * @author fishzhao
  * @since 2022-01-25
  */
 @Slf4j
-@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 final class ProxyStubSupplier implements Supplier<Future<ProxyStub>>, Closeable {
 
 
   private static final int MAX_CONNECT_ATTEMPTS = 10;
 
-  private final Timer timer = new HashedWheelTimer(
-          new ThreadFactoryBuilder()
-                  .setDaemon(true)
-                  .setNameFormat("vertx-rpc0-timeout-ticker-%d")
-                  .build()
-  );
   private final AtomicBoolean closed = new AtomicBoolean(false);
-  private final AtomicReference<Future<ProxyStub>> futureRef = new AtomicReference<>(null);
+  private final AtomicInteger nextIndex = new AtomicInteger(0);
+  private final Connection[] connections;
+  // the connection of each event loop, null without affinity
+  private final Map<EventLoop, Connection> affinity;
 
-  private final ContextInternal context;
   private final NetClient netClient;
   private final MessageTransport messageTransport;
   private final Duration timeout;
   private final String host;
   private final int port;
+  private final boolean methodIdNegotiation;
+  private final boolean nativeFrameDecoder;
 
-  private int connectAttempts = 0;
-
-  @Override
-  public Future<ProxyStub> get() {
-    Future<ProxyStub> cachedFuture;
-    if ((cachedFuture = futureRef.get()) != null) {
-      return cachedFuture;
+  ProxyStubSupplier(@NonNull List<ContextInternal> contexts,
+                    @NonNull NetClient netClient,
+                    @NonNull MessageTransport messageTransport,
+                    @NonNull Duration timeout,
+                    @NonNull String host,
+                    int port,
+                    boolean methodIdNegotiation,
+                    boolean nativeFrameDecoder,
+                    boolean eventLoopAffinity) {
+    Preconditions.checkArgument(!contexts.isEmpty(), "No context for connections!");
+    this.connections = new Connection[contexts.size()];
+    for (int i = 0; i < connections.length; ++i) {
+      connections[i] = new Connection(contexts.get(i));
     }
-    Promise<ProxyStub> promise = context.promise();
-    if (isActive()) {
-      context.runOnContext(v -> {
-        if (connectAttempts > MAX_CONNECT_ATTEMPTS) {
-          promise.tryFail("Connecting fail over maximum limit: " + MAX_CONNECT_ATTEMPTS);
-          return;
-        }
-        Future<ProxyStub> future;
-        if ((future = futureRef.get()) != null) {
-          future.onComplete(promise);
-          return;
-        }
-        //increase the attempts
-        ++connectAttempts;
-        createProxyStub(promise);
-        Future<ProxyStub> currentFuture = promise.future();
-        futureRef.set(currentFuture);
-        currentFuture.onComplete(result -> {
-          if (result.succeeded()) {
-            connectAttempts = 0;
-          } else if (isActive()) {
-            //ensure set itself to null
-            futureRef.compareAndSet(currentFuture, null);
-          }
-        });
-      });
+    if (eventLoopAffinity) {
+      this.affinity = new IdentityHashMap<>(connections.length);
+      for (Connection connection : connections) {
+        affinity.putIfAbsent(connection.context.nettyEventLoop(), connection);
+      }
     } else {
-      promise.fail("Connection unavailable for already closed!");
+      this.affinity = null;
     }
-    return promise.future();
+    this.netClient = netClient;
+    this.messageTransport = messageTransport;
+    this.timeout = timeout;
+    this.host = host;
+    this.port = port;
+    this.methodIdNegotiation = methodIdNegotiation;
+    this.nativeFrameDecoder = nativeFrameDecoder;
   }
 
-  private void createProxyStub(Promise<ProxyStub> promise) {
-    netClient.connect(port, host, result -> {
-      if (result.succeeded()) {
-        try {
-          NetSocket socket = result.result();
-          ProxyStub proxyStub = new ProxyStub((NetSocketInternal) socket, messageTransport, timer, timeout);
-          proxyStub.registerHandlers(this::onConnectionDispose);
-          promise.complete(proxyStub);
-          log.info("Open connection to [{}] successfully",
-                  socket.remoteAddress());
-        } catch (Throwable cause) {
-          promise.tryFail(cause);
+  @Override
+  public Future<ProxyStub> get() {
+    if (connections.length == 1) {
+      return connections[0].get();
+    }
+    if (affinity != null) {
+      return affine();
+    }
+    ProxyStub selected = null;
+    int minPendingRequests = Integer.MAX_VALUE;
+    for (Connection connection : connections) {
+      ProxyStub proxyStub = connection.connectedOrReplace();
+      if (proxyStub != null) {
+        int pendingRequests = proxyStub.pendingRequests();
+        if (pendingRequests < minPendingRequests) {
+          selected = proxyStub;
+          minPendingRequests = pendingRequests;
         }
-      } else {
-        promise.tryFail(result.cause());
       }
-    });
+    }
+    if (selected != null) {
+      return Future.succeededFuture(selected);
+    }
+    // nothing connected yet, wait for one of them
+    return connections[Math.floorMod(nextIndex.getAndIncrement(), connections.length)].get();
   }
 
-  private void onConnectionDispose() {
-    if (isActive()) {
-      futureRef.set(null);
+  private Future<ProxyStub> affine() {
+    ContextInternal current = ContextInternal.current();
+    if (current != null && current.isEventLoopContext()) {
+      Connection connection = affinity.get(current.nettyEventLoop());
+      if (connection != null) {
+        return connection.get();
+      }
     }
+    return connections[Math.floorMod(nextIndex.getAndIncrement(), connections.length)].get();
   }
 
   private boolean isActive() {
@@ -119,6 +132,111 @@ final class ProxyStubSupplier implements Supplier<Future<ProxyStub>>, Closeable
   @Override
   public void close(Promise<Void> completion) {
     if (closed.compareAndSet(false, true)) {
+      @SuppressWarnings("rawtypes") List<Future> futures = new ArrayList<>(connections.length);
+      for (Connection connection : connections) {
+        Promise<Void> promise = Promise.promise();
+        connection.close(promise);
+        futures.add(promise.future());
+      }
+      CompositeFuture.join(futures)
+              .<Void>mapEmpty()
+              .onComplete(completion);
+    } else {
+      completion.fail("ProxyStubSupplier already closed!");
+    }
+  }
+
+  private final class Connection {
+
+    private final AtomicReference<Future<ProxyStub>> futureRef = new AtomicReference<>(null);
+    private final ContextInternal context;
+    private int connectAttempts = 0;
+
+    private Connection(ContextInternal context) {
+      this.context = context;
+    }
+
+    /**
+     * @return the connected stub, or null while (re)connecting, which is started if absent
+     */
+    ProxyStub connectedOrReplace() {
+      Future<ProxyStub> future = futureRef.get();
+      if (future == null) {
+        get();
+        return null;
+      }
+      if (future.succeeded() && !future.result().isClosed()) {
+        return future.result();
+      }
+      return null;
+    }
+
+    Future<ProxyStub> get() {
+      Future<ProxyStub> cachedFuture;
+      if ((cachedFuture = futureRef.get()) != null) {
+        return cachedFuture;
+      }
+      Promise<ProxyStub> promise = context.promise();
+      if (isActive()) {
+        context.runOnContext(v -> {
+          if (connectAttempts > MAX_CONNECT_ATTEMPTS) {
+            promise.tryFail("Connecting fail over maximum limit: " + MAX_CONNECT_ATTEMPTS);
+            return;
+          }
+          Future<ProxyStub> future;
+          if ((future = futureRef.get()) != null) {
+            future.onComplete(promise);
+            return;
+          }
+          //increase the attempts
+          ++connectAttempts;
+          createProxyStub(promise);
+          Future<ProxyStub> currentFuture = promise.future();
+          futureRef.set(currentFuture);
+          currentFuture.onComplete(result -> {
+            if (result.succeeded()) {
+              connectAttempts = 0;
+            } else if (isActive()) {
+              //ensure set itself to null
+              futureRef.compareAndSet(currentFuture, null);
+            }
+          });
+        });
+      } else {
+        promise.fail("Connection unavailable for already closed!");
+      }
+      return promise.future();
+    }
+
+    private void createProxyStub(Promise<ProxyStub> promise) {
+      netClient.connect(port, host, result -> {
+        if (result.succeeded()) {
+          try {
+            NetSocket socket = result.result();
+            ProxyStub proxyStub = new ProxyStub((NetSocketInternal) socket, messageTransport, timeout, nativeFrameDecoder);
+            proxyStub.registerHandlers(this::onConnectionDispose);
+            if (methodIdNegotiation) {
+              proxyStub.handshake();
+            }
+            promise.complete(proxyStub);
+            log.info("Open connection to [{}] successfully",
+                    socket.remoteAddress());
+          } catch (Throwable cause) {
+            promise.tryFail(cause);
+          }
+        } else {
+          promise.tryFail(result.cause());
+        }
+      });
+    }
+
+    private void onConnectionDispose() {
+      if (isActive()) {
+        futureRef.set(null);
+      }
+    }
+
+    void close(Promise<Void> completion) {
       Future<ProxyStub> future;
       if ((future = futureRef.get()) != null) {
         future.onComplete(result -> {
@@ -131,8 +249,6 @@ final class ProxyStubSupplier implements Supplier<Future<ProxyStub>>, Closeable
       } else {
         completion.complete();
       }
-    } else {
-      completion.fail("ProxyStubSupplier already closed!");
     }
   }
 }
@@ -1,6 +1,7 @@
 package com.github.rpc0.client;
 
 import com.google.common.base.Preconditions;
+import com.github.rpc0.annotation.GeneratedNames;
 import io.vertx.core.Closeable;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -8,8 +9,12 @@ import io.vertx.core.impl.VertxInternal;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -18,11 +23,15 @@ import java.util.concurrent.ConcurrentMap;
  * @author fishzhao
  * @since 2021-12-17
  */
+@Slf4j
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public final class ServiceFactory implements Closeable {
 
   private final ConcurrentMap<Class<?>, Object> proxyCache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Method, MethodDescriptor> methodDescriptors = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, Optional<Constructor<?>>> stubConstructors = new ConcurrentHashMap<>();
   private final Set<Class<?>> registry;
+  private final Set<Method> oneWayMethods;
   private final Vertx vertx;
   private final ProxyStubSupplier proxyStubSupplier;
 
@@ -32,12 +41,44 @@ public final class ServiceFactory implements Closeable {
             "`%s` is not registered!",
             type
     );
+    Optional<Constructor<?>> stubConstructor = stubConstructors.computeIfAbsent(type, ServiceFactory::findStubConstructor);
+    if (stubConstructor.isPresent()) {
+      try {
+        return type.cast(stubConstructor.get().newInstance(this));
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        log.warn("Fallback to proxy, failed to create the generated stub of: {}", type, e);
+      }
+    }
     Object proxy = Proxy.newProxyInstance(type.getClassLoader(),
             new Class[]{type},
-            new ProxyStubInvocationHandler((VertxInternal) vertx, proxyStubSupplier));
+            newInvocationHandler());
     return type.cast(proxy);
   }
 
+  ProxyStubInvocationHandler newInvocationHandler() {
+    return new ProxyStubInvocationHandler((VertxInternal) vertx, proxyStubSupplier, methodDescriptors, oneWayMethods);
+  }
+
+  // the stub generated by vertx-rpc0-processor for a service annotated with @Rpc0Service
+  private static Optional<Constructor<?>> findStubConstructor(Class<?> type) {
+    Class<?> stubClass;
+    try {
+      stubClass = Class.forName(GeneratedNames.stubName(type.getName()), false, type.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return Optional.empty();
+    }
+    if (!type.isAssignableFrom(stubClass) || !ServiceStub.class.isAssignableFrom(stubClass)) {
+      log.warn("Ignore the generated stub not of type {}: {}", type, stubClass);
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(stubClass.getConstructor(ServiceFactory.class));
+    } catch (NoSuchMethodException e) {
+      log.warn("Ignore the generated stub without a public constructor: {}", stubClass);
+      return Optional.empty();
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public <T> T getOrCreate(@NonNull Class<? extends T> type) {
     return (T) proxyCache.computeIfAbsent(type, key -> create((Class<? extends T>) key));
@@ -6,14 +6,20 @@ import com.github.rpc0.conf.AbstractConfigurator;
 import com.github.rpc0.conf.ConstructingProcess;
 import com.github.rpc0.kryo.KryoFactory;
 import com.github.rpc0.transport.KryoMessageTransport;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
 import io.vertx.core.Vertx;
 import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.impl.VertxInternal;
 import io.vertx.core.net.NetClientOptions;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -24,12 +30,21 @@ import java.util.Set;
 public final class ServiceFactoryBuilder extends AbstractConfigurator<ServiceFactoryBuilder> implements ConstructingProcess<ServiceFactory> {
 
   private final Set<Class<?>> serviceRegistry = new HashSet<>();
+  private final Set<Method> oneWayMethods = new HashSet<>();
   private final Vertx vertx;
   private final NetClientOptions netClientOptions;
   private final Duration timeout;
   private final String host;
   private final int port;
+  private boolean methodIdNegotiation = false;
+  private boolean nativeFrameDecoder = false;
+  private int poolSize = 1;
+  private boolean eventLoopAffinity = false;
 
+  /**
+   * @param timeout of each call from the call on, a call timed out is cancelled on the server once the handshake
+   *                announced the cancellation, the only way a call is cancelled
+   */
   public ServiceFactoryBuilder(@NonNull Vertx vertx,
                                @NonNull String host,
                                int port,
@@ -59,19 +74,100 @@ public final class ServiceFactoryBuilder extends AbstractConfigurator<ServiceFac
     return this;
   }
 
+  /**
+   * Call {@code method} one-way like a method annotated with {@link com.github.rpc0.annotation.OneWay},
+   * for a service interface that cannot be annotated.
+   */
+  public ServiceFactoryBuilder registerOneWay(@NonNull Method method) {
+    Preconditions.checkArgument(
+            method.getDeclaringClass().isInterface(),
+            "%s is not a method of interface!",
+            method
+    );
+    oneWayMethods.add(method);
+    return this;
+  }
+
+  /**
+   * Negotiate integer method ids with the server on connecting, off by default since a server without handshake support
+   * closes the connection on receiving the handshake, enable it only when the server supports it.
+   */
+  public ServiceFactoryBuilder setMethodIdNegotiation(boolean methodIdNegotiation) {
+    this.methodIdNegotiation = methodIdNegotiation;
+    return this;
+  }
+
+  /**
+   * Decode frames in the Netty pipeline instead of the Vert.x {@code RecordParser}.
+   */
+  public ServiceFactoryBuilder setNativeFrameDecoder(boolean nativeFrameDecoder) {
+    this.nativeFrameDecoder = nativeFrameDecoder;
+    return this;
+  }
+
+  /**
+   * Open {@code poolSize} connections to the endpoint, each on its own event loop,
+   * every call goes through the connection with the least pending requests.
+   */
+  public ServiceFactoryBuilder setPoolSize(int poolSize) {
+    Preconditions.checkArgument(poolSize > 0, "Illegal poolSize: %s", poolSize);
+    this.poolSize = poolSize;
+    return this;
+  }
+
+  /**
+   * Open a connection on each event loop instead of a pool, a call made on an event loop goes through
+   * the connection of that loop and completes inline, a call from another thread goes round-robin.
+   * Exclusive with {@link #setPoolSize(int)}, the number of event loops sizes the connections.
+   */
+  public ServiceFactoryBuilder setEventLoopAffinity(boolean eventLoopAffinity) {
+    this.eventLoopAffinity = eventLoopAffinity;
+    return this;
+  }
+
   @Override
   public ServiceFactory build() {
+    Preconditions.checkState(!eventLoopAffinity || poolSize == 1,
+            "poolSize %s conflicts with event loop affinity, which opens a connection per event loop", poolSize);
     return new ServiceFactory(
             ImmutableSet.copyOf(serviceRegistry),
+            ImmutableSet.copyOf(oneWayMethods),
             vertx,
             new ProxyStubSupplier(
-                    (ContextInternal) vertx.getOrCreateContext(),
+                    contexts(),
                     vertx.createNetClient(netClientOptions),
                     new KryoMessageTransport(new KryoFactory(getClassLoader(), getKryoRegistry())),
                     timeout,
                     host,
-                    port
+                    port,
+                    methodIdNegotiation,
+                    nativeFrameDecoder,
+                    eventLoopAffinity
             )
     );
   }
+
+  // the first connection stays on the current context, the others are spread over the event loops
+  private List<ContextInternal> contexts() {
+    if (eventLoopAffinity) {
+      return eventLoopContexts();
+    }
+    List<ContextInternal> contexts = new ArrayList<>(poolSize);
+    contexts.add((ContextInternal) vertx.getOrCreateContext());
+    for (int i = 1; i < poolSize; ++i) {
+      contexts.add(((VertxInternal) vertx).createEventLoopContext());
+    }
+    return contexts;
+  }
+
+  // a context on each event loop, the connections are opened on the first call of their loops
+  private List<ContextInternal> eventLoopContexts() {
+    VertxInternal vertxInternal = (VertxInternal) vertx;
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    List<ContextInternal> contexts = new ArrayList<>();
+    for (EventExecutor executor : vertxInternal.getEventLoopGroup()) {
+      contexts.add(vertxInternal.createEventLoopContext((EventLoop) executor, null, classLoader));
+    }
+    return contexts;
+  }
 }
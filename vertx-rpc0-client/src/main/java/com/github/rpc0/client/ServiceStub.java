@@ -0,0 +1,39 @@
+package com.github.rpc0.client;
+
+import com.github.rpc0.invoke.ParameterArray;
+import io.vertx.core.Future;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import java.lang.reflect.Method;
+
+/**
+ * Base class of the client stubs generated by vertx-rpc0-processor, a stub method passes its arguments
+ * and the index of its {@link Method} straight to {@link #call(int, ParameterArray)}.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+public abstract class ServiceStub {
+
+  private final ProxyStubInvocationHandler handler;
+  private final MethodDescriptor[] descriptors;
+
+  protected ServiceStub(@NonNull ServiceFactory factory, @NonNull Method[] methods) {
+    this.handler = factory.newInvocationHandler();
+    this.descriptors = new MethodDescriptor[methods.length];
+    for (int i = 0; i < methods.length; ++i) {
+      descriptors[i] = handler.descriptorOf(methods[i]);
+    }
+  }
+
+  @SneakyThrows
+  protected static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+    return type.getMethod(name, parameterTypes);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected final <T> Future<T> call(int index, ParameterArray parameters) {
+    return (Future<T>) (Future<?>) handler.call(descriptors[index], parameters);
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.rpc0.client;
+
+import com.github.rpc0.invoke.InvokeResult;
+import com.github.rpc0.invoke.ResultCode;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare completing the promise of a call through a second promise of the proxy stub (chained)
+ * with completing it directly (single), run with {@code -prof gc}.
+ * <pre>
+ * Benchmark                                         Mode  Cnt   Score    Error  Units
+ * CallPromiseBenchmark.chained                      avgt    5  89.988 ± 40.776  ns/op
+ * CallPromiseBenchmark.chained:·gc.alloc.rate.norm  avgt    5  96.002 ±  0.020   B/op
+ * CallPromiseBenchmark.single                       avgt    5  28.576 ±  5.930  ns/op
+ * CallPromiseBenchmark.single:·gc.alloc.rate.norm   avgt    5  24.001 ±  0.007   B/op
+ * </pre>
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CallPromiseBenchmark {
+
+  private VertxInternal vertxInternal;
+  private InvokeResult result;
+
+  @Setup
+  public void setup() {
+    vertxInternal = (VertxInternal) Vertx.vertx();
+    result = new InvokeResult(1L, System.currentTimeMillis(), ResultCode.OK, null, 3D);
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertxInternal.close();
+  }
+
+  @Benchmark
+  public Future<Object> chained() {
+    Class<?> resultType = Double.class;
+    Promise<Object> promise = vertxInternal.promise();
+    Promise<InvokeResult> stubPromise = Promise.promise();
+    stubPromise.future().onComplete(ar -> handleResult(ar, promise, resultType));
+    stubPromise.tryComplete(result);
+    return promise.future();
+  }
+
+  @Benchmark
+  public Future<Object> single() {
+    Promise<Object> promise = vertxInternal.promise();
+    ProxyStub.complete(promise, Double.class, result);
+    return promise.future();
+  }
+
+  // what the invocation handler did with the result of the proxy stub
+  private static void handleResult(AsyncResult<InvokeResult> ar, Promise<Object> promise, Class<?> resultType) {
+    if (ar.succeeded()) {
+      ProxyStub.complete(promise, resultType, ar.result());
+    } else {
+      promise.tryFail(ar.cause());
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.rpc0.client;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineQueueTest {
+
+  private final TLongSet pending = new TLongHashSet();
+  private final DeadlineQueue queue = new DeadlineQueue(pending::contains);
+
+  private void add(long requestId) {
+    pending.add(requestId);
+    queue.add(requestId, requestId * 10L);
+  }
+
+  @Test
+  public void verifySlowCallAmongFastCalls() {
+    add(1L);
+    for (long requestId = 2L; requestId < 100_000L; ++requestId) {
+      add(requestId);
+      // answered before the next call
+      pending.remove(requestId);
+    }
+
+    // neither the slow call nor its deadline is lost, the fast calls do not pile up behind it
+    assertTrue(queue.size() <= 64);
+    assertEquals(1L, queue.peekRequestId());
+    assertEquals(10L, queue.peekDeadline());
+  }
+
+  @Test
+  public void verifyOrderOfPendingCalls() {
+    for (long requestId = 1L; requestId <= 1_000L; ++requestId) {
+      add(requestId);
+      if (requestId % 3L != 0L) {
+        pending.remove(requestId);
+      }
+    }
+
+    for (long requestId = 3L; requestId <= 1_000L; requestId += 3L) {
+      // answered after the last compaction, left to the expiry
+      while (!pending.contains(queue.peekRequestId())) {
+        queue.remove();
+      }
+      assertEquals(requestId, queue.peekRequestId());
+      assertEquals(requestId * 10L, queue.peekDeadline());
+      queue.remove();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.rpc0.annotation;
+
+/**
+ * Names of the classes generated for a {@link Rpc0Service}, they are top-level classes in the package of the service.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+public final class GeneratedNames {
+
+  private GeneratedNames() {
+    throw new IllegalStateException();
+  }
+
+  /**
+   * @param binaryName binary name of the service interface, as {@link Class#getName()}
+   */
+  public static String stubName(String binaryName) {
+    return binaryName.replace('$', '_') + "_Rpc0Stub";
+  }
+
+  /**
+   * @param binaryName binary name of the service interface, as {@link Class#getName()}
+   */
+  public static String skeletonName(String binaryName) {
+    return binaryName.replace('$', '_') + "_Rpc0Skeleton";
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.rpc0.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a service interface returning {@code Future<Void>} as fire-and-forget,
+ * the call completes once its request is flushed and the server never answers it.
+ * A server without one-way support, or before the handshake, is called like any other method.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OneWay {
+}
@@ -0,0 +1,18 @@
+package com.github.rpc0.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service interface for the annotation processor of vertx-rpc0-processor,
+ * which generates the classes named by {@link GeneratedNames}.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Rpc0Service {
+}
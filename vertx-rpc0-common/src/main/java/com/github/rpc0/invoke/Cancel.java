@@ -0,0 +1,42 @@
+package com.github.rpc0.invoke;
+
+import com.github.rpc0.transport.MessageExchange;
+import com.google.common.base.MoreObjects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the client for a request it has given up, the server neither answers it nor keeps tracking it.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+@Getter
+@RequiredArgsConstructor
+public final class Cancel implements MessageExchange, Serializable {
+
+  private static final long serialVersionUID = -3325167532406152170L;
+
+  private final long requestId;
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return requestId == ((Cancel) o).requestId;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(requestId);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+            .add("requestId", requestId)
+            .toString();
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.rpc0.invoke;
+
+import com.github.rpc0.transport.MessageExchange;
+import com.google.common.base.MoreObjects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the client once a connection is open, the server answers with a handshake of its own
+ * then its {@link MethodTable}. Each side writes an optional encoding only if the other announced reading it.
+ *
+ * @author fishzhao
+ * @since 2022-03-03
+ */
+@Getter
+@RequiredArgsConstructor
+public final class Handshake implements MessageExchange, Serializable {
+
+  /**
+   * The client reads results written against the declared result type without their class.
+   */
+  public static final int UNTAGGED_RESULTS = 1;
+  /**
+   * The server reads parameters written against the declared parameter types without their class.
+   */
+  public static final int UNTAGGED_PARAMETERS = 1 << 1;
+  /**
+   * The server reads the budget of a request, the millis left before the client gives it up.
+   */
+  public static final int DEADLINES = 1 << 2;
+  /**
+   * The server reads the {@link Cancel} of a request the client gave up.
+   */
+  public static final int CANCELLATION = 1 << 3;
+  /**
+   * The server invokes a request of {@link InvokeSpec#ONE_WAY_REQUEST_ID} without answering it.
+   */
+  public static final int ONE_WAY = 1 << 4;
+
+  private static final long serialVersionUID = 4626358071307781419L;
+
+  private final long timestamp;
+  // bits of the optional encodings the sender reads
+  private final int features;
+
+  public Handshake(long timestamp) {
+    this(timestamp, 0);
+  }
+
+  public boolean supports(int feature) {
+    return (features & feature) == feature;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    Handshake that = (Handshake) o;
+    return timestamp == that.timestamp && features == that.features;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(timestamp) + features;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+            .add("timestamp", timestamp)
+            .add("features", features)
+            .toString();
+  }
+}
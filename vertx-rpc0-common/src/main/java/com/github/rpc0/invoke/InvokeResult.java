@@ -2,8 +2,8 @@ package com.github.rpc0.invoke;
 
 import com.github.rpc0.transport.MessageExchange;
 import com.google.common.base.MoreObjects;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -12,7 +12,7 @@ import java.util.Objects;
  * @author fishzhao
  * @since 2021-12-16
  */
-@RequiredArgsConstructor
+@AllArgsConstructor
 @Getter
 public final class InvokeResult implements MessageExchange, Serializable {
 
@@ -22,6 +22,16 @@ public final class InvokeResult implements MessageExchange, Serializable {
   private final ResultCode code;
   private final String errorMessage;
   private final Object result;
+  // declared type the result is written against without its class, for a client announced to read it
+  private final Class<?> resultType;
+
+  public InvokeResult(long requestId,
+                      long timestamp,
+                      ResultCode code,
+                      String errorMessage,
+                      Object result) {
+    this(requestId, timestamp, code, errorMessage, result, null);
+  }
 
   @Override
   public boolean equals(Object o) {
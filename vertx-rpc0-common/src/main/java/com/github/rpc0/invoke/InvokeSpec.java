@@ -17,23 +17,73 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public final class InvokeSpec implements MessageExchange, Serializable {
 
+  public static final int NO_METHOD_ID = -1;
+  public static final long NO_DEADLINE = 0L;
+  // never assigned to a call awaiting its result, the server does not answer a request of this id
+  public static final long ONE_WAY_REQUEST_ID = 0L;
+
   private static final long serialVersionUID = -1103942057244279626L;
 
   private final long requestId;
   private final long timestamp;
+  // epoch millis when the call is given up, in the clock of the side holding the spec,
+  // the budget left is sent and the server anchors it to the arrival of the request
+  private final long deadline;
   private final String callSiteClassName;
   private final String methodName;
   private final MethodType methodType;
+  // negotiated by handshake, when present the names and method type are not sent
+  private final int methodId;
   private final ParameterArray parameters;
 
+  public InvokeSpec(long requestId,
+                    long timestamp,
+                    String callSiteClassName,
+                    String methodName,
+                    MethodType methodType,
+                    int methodId,
+                    ParameterArray parameters) {
+    this(requestId, timestamp, NO_DEADLINE, callSiteClassName, methodName, methodType, methodId, parameters);
+  }
+
+  public InvokeSpec(long requestId,
+                    long timestamp,
+                    String callSiteClassName,
+                    String methodName,
+                    MethodType methodType,
+                    ParameterArray parameters) {
+    this(requestId, timestamp, callSiteClassName, methodName, methodType, NO_METHOD_ID, parameters);
+  }
+
+  public boolean hasMethodId() {
+    return methodId != NO_METHOD_ID;
+  }
+
+  public boolean isOneWay() {
+    return requestId == ONE_WAY_REQUEST_ID;
+  }
+
+  public boolean hasDeadline() {
+    return deadline != NO_DEADLINE;
+  }
+
+  /**
+   * @param now epoch millis of the clock the deadline is in
+   */
+  public boolean isExpired(long now) {
+    return hasDeadline() && now >= deadline;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
             .add("requestId", requestId)
             .add("timestamp", timestamp)
+            .add("deadline", deadline)
             .add("callSiteClassName", callSiteClassName)
             .add("methodName", methodName)
             .add("methodType", methodType)
+            .add("methodId", methodId)
             .add("parameters", parameters)
             .toString();
   }
@@ -45,14 +95,16 @@ public final class InvokeSpec implements MessageExchange, Serializable {
     InvokeSpec that = (InvokeSpec) o;
     return requestId == that.requestId
            && timestamp == that.timestamp
-           && callSiteClassName.equals(that.callSiteClassName)
-           && methodName.equals(that.methodName)
-           && methodType.equals(that.methodType)
-           && parameters.equals(that.parameters);
+           && deadline == that.deadline
+           && methodId == that.methodId
+           && Objects.equals(callSiteClassName, that.callSiteClassName)
+           && Objects.equals(methodName, that.methodName)
+           && Objects.equals(methodType, that.methodType)
+           && Objects.equals(parameters, that.parameters);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(requestId, timestamp, callSiteClassName, methodName, methodType, parameters);
+    return Objects.hash(requestId, timestamp, deadline, callSiteClassName, methodName, methodType, methodId, parameters);
   }
 }
@@ -0,0 +1,68 @@
+package com.github.rpc0.invoke;
+
+import com.github.rpc0.transport.MessageExchange;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+/**
+ * The method ids published by a server for one connection, keyed by {@link #signatureOf(String, String, MethodType)}.
+ *
+ * @author fishzhao
+ * @since 2022-03-03
+ */
+@Getter
+public final class MethodTable implements MessageExchange, Serializable {
+
+  private static final long serialVersionUID = -2793651163850342017L;
+
+  private final ImmutableMap<String, Integer> methodIds;
+
+  public MethodTable(@NonNull Map<String, Integer> methodIds) {
+    this.methodIds = ImmutableMap.copyOf(methodIds);
+  }
+
+  /**
+   * @param methodType returns the result type of the future, so the call sites expecting another result type
+   *                   get no method id, and read their results tagged
+   */
+  public static String signatureOf(@NonNull String serviceName,
+                                   @NonNull String methodName,
+                                   @NonNull MethodType methodType) {
+    return serviceName + '#' + methodName + methodType.toMethodDescriptorString();
+  }
+
+  public int methodIdOf(String signature) {
+    Integer methodId = methodIds.get(signature);
+    return methodId != null ? methodId : InvokeSpec.NO_METHOD_ID;
+  }
+
+  public int size() {
+    return methodIds.size();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    MethodTable that = (MethodTable) o;
+    return methodIds.equals(that.methodIds);
+  }
+
+  @Override
+  public int hashCode() {
+    return methodIds.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+            .add("methodIds", methodIds)
+            .toString();
+  }
+}
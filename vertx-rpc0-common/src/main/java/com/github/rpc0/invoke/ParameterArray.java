@@ -62,6 +62,16 @@ public final class ParameterArray extends AbstractList<Object> implements Random
     return create(parameters, null);
   }
 
+  /**
+   * Take over the array without copying, the caller must not modify it anymore.
+   */
+  public static ParameterArray wrap(Object[] parameters) {
+    if (parameters == null || parameters.length == 0) {
+      return EMPTY;
+    }
+    return new ParameterArray(parameters);
+  }
+
   public static ParameterArray create(Collection<?> collection, UnaryOperator<Object> transform) {
     if (collection == null || collection.isEmpty()) {
       return EMPTY;
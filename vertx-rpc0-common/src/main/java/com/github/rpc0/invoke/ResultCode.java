@@ -6,7 +6,9 @@ public enum ResultCode {
   PARAMETER_ERROR,
   LOOKUP_ERROR,
   INVOCATION_ERROR,
-  UNKNOWN_ERROR;
+  UNKNOWN_ERROR,
+  // shed by the server, the client has given up the call
+  DEADLINE_EXCEEDED;
 
   private static final ResultCode[] LOOKUP = ResultCode.values();
 
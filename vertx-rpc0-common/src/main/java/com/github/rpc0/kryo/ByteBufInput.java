@@ -0,0 +1,36 @@
+package com.github.rpc0.kryo;
+
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the readable bytes of a {@link ByteBuf} in place (heap or direct), through a nio view of its memory.
+ * <p>
+ * Not thread-safe, should be reused by one thread and {@link #clear()} after each message.
+ *
+ * @author fishzhao
+ * @since 2022-03-04
+ */
+public final class ByteBufInput extends ByteBufferInput {
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  public ByteBufInput() {
+    super(EMPTY);
+  }
+
+  public ByteBufInput(@NonNull ByteBuf byteBuf) {
+    setByteBuf(byteBuf);
+  }
+
+  public void setByteBuf(@NonNull ByteBuf byteBuf) {
+    setBuffer(byteBuf.nioBuffer(byteBuf.readerIndex(), byteBuf.readableBytes()));
+  }
+
+  public void clear() {
+    setBuffer(EMPTY);
+  }
+}
@@ -0,0 +1,84 @@
+package com.github.rpc0.kryo;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes into the memory of a {@link ByteBuf} directly (heap or direct), through a nio view of its writable bytes,
+ * the {@link ByteBuf} is expanded in place when the view is full, no intermediate array is involved.
+ * <p>
+ * Not thread-safe, should be reused by one thread and {@link #clear()} after each message.
+ *
+ * @author fishzhao
+ * @since 2022-03-04
+ */
+public final class ByteBufOutput extends ByteBufferOutput {
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private ByteBuf byteBuf;
+  // the writer index of the ByteBuf where current view starts
+  private int writerIndex;
+
+  public ByteBufOutput() {
+    super(EMPTY);
+  }
+
+  public ByteBufOutput(@NonNull ByteBuf byteBuf) {
+    setByteBuf(byteBuf);
+  }
+
+  public void setByteBuf(@NonNull ByteBuf byteBuf) {
+    this.byteBuf = byteBuf;
+    this.total = 0;
+    view();
+  }
+
+  public ByteBuf getByteBuf() {
+    return byteBuf;
+  }
+
+  public void clear() {
+    this.byteBuf = null;
+    super.setBuffer(EMPTY);
+  }
+
+  private void view() {
+    long total = this.total;
+    writerIndex = byteBuf.writerIndex();
+    super.setBuffer(byteBuf.nioBuffer(writerIndex, byteBuf.writableBytes()), -1);
+    this.total = total;
+  }
+
+  @Override
+  protected boolean require(int required) throws KryoException {
+    if (capacity - position >= required) {
+      return false;
+    }
+    flush();
+    try {
+      byteBuf.ensureWritable(required);
+    } catch (IndexOutOfBoundsException e) {
+      throw new KryoException("Buffer overflow, required: " + required, e);
+    }
+    view();
+    return true;
+  }
+
+  /**
+   * Commit the written bytes to the writer index of the {@link ByteBuf}.
+   */
+  @Override
+  public void flush() throws KryoException {
+    if (byteBuf == null) {
+      throw new KryoException("No ByteBuf to write to");
+    }
+    byteBuf.writerIndex(writerIndex + position);
+    total += position;
+    view();
+  }
+}
@@ -1,12 +1,18 @@
 package com.github.rpc0.kryo;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.SerializerFactory;
 import com.esotericsoftware.kryo.serializers.DefaultArraySerializers;
 import com.esotericsoftware.kryo.serializers.DefaultSerializers;
+import com.github.rpc0.invoke.Cancel;
+import com.github.rpc0.invoke.Handshake;
 import com.github.rpc0.invoke.InvokeResult;
 import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.MethodTable;
 import com.github.rpc0.invoke.ParameterArray;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -14,11 +20,15 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.github.rpc0.kryo.serializer.AsciiStringSerializer;
 import com.github.rpc0.kryo.serializer.BufferSerializer;
+import com.github.rpc0.kryo.serializer.CancelSerializer;
 import com.github.rpc0.kryo.serializer.ComparatorSerializer;
+import com.github.rpc0.kryo.serializer.HandshakeSerializer;
 import com.github.rpc0.kryo.serializer.ImmutableCollectionSerializer;
 import com.github.rpc0.kryo.serializer.ImmutableMapSerializer;
 import com.github.rpc0.kryo.serializer.InvokeResultSerializer;
 import com.github.rpc0.kryo.serializer.InvokeSpecSerializer;
+import com.github.rpc0.kryo.serializer.MethodTableSerializer;
+import com.github.rpc0.kryo.serializer.MethodTypeCache;
 import com.github.rpc0.kryo.serializer.MethodTypeSerializer;
 import com.github.rpc0.kryo.serializer.ParameterArraySerializer;
 import com.github.rpc0.kryo.serializer.PropertiesSerializer;
@@ -47,6 +57,7 @@ import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
 /**
@@ -85,13 +96,31 @@ public final class KryoFactory implements Supplier<Kryo> {
                   .add(Instant.class)
                   .build();
 
+  // far above the ids of the custom types, which start right after the builtin ones
+  private static final int HANDSHAKE_ID = 1 << 20;
+  private static final int METHOD_TABLE_ID = HANDSHAKE_ID + 1;
+  private static final int CANCEL_ID = HANDSHAKE_ID + 2;
+
   private final ClassLoader classLoader;
   private final KryoRegistry registry;
-
+  private final IntFunction<MethodType> methodTypes;
+  // shared by the kryo instances of this factory, which register the same class ids
+  private final MethodTypeCache methodTypeCache = new MethodTypeCache();
+
+  /**
+   * @param methodTypes the method types of the method ids published by a server, to read the parameters
+   *                    of a call by method id
+   */
   public KryoFactory(@NonNull ClassLoader classLoader,
-                     @NonNull KryoRegistry registry) {
+                     @NonNull KryoRegistry registry,
+                     @NonNull IntFunction<MethodType> methodTypes) {
     this.classLoader = classLoader;
     this.registry = registry;
+    this.methodTypes = methodTypes;
+  }
+
+  public KryoFactory(ClassLoader classLoader, KryoRegistry registry) {
+    this(classLoader, registry, methodId -> null);
   }
 
   public KryoFactory() {
@@ -119,8 +148,8 @@ public final class KryoFactory implements Supplier<Kryo> {
     kryo.setDefaultSerializer(new SerializerFactory.VersionFieldSerializerFactory());
     kryo.register(Void.class, new DefaultSerializers.VoidSerializer());
     kryo.register(ParameterArray.class, new ParameterArraySerializer());
-    kryo.register(MethodType.class, new MethodTypeSerializer());
-    kryo.register(InvokeSpec.class, new InvokeSpecSerializer());
+    kryo.register(MethodType.class, new MethodTypeSerializer(methodTypeCache));
+    kryo.register(InvokeSpec.class, new InvokeSpecSerializer(methodTypes));
     kryo.register(InvokeResult.class, new InvokeResultSerializer());
 
     registerValueTypes(kryo);
@@ -133,9 +162,21 @@ public final class KryoFactory implements Supplier<Kryo> {
 
     registry.registerClasses(kryo);
 
+    // registered last with fixed ids, so neither the custom type ids nor these depend on each other
+    registerProtocolType(kryo, Handshake.class, new HandshakeSerializer(), HANDSHAKE_ID);
+    registerProtocolType(kryo, MethodTable.class, new MethodTableSerializer(), METHOD_TABLE_ID);
+    registerProtocolType(kryo, Cancel.class, new CancelSerializer(), CANCEL_ID);
+
     return kryo;
   }
 
+  private static void registerProtocolType(Kryo kryo, Class<?> type, Serializer<?> serializer, int id) {
+    Registration registration = kryo.getRegistration(id);
+    Preconditions.checkState(registration == null, "Class id %s of %s is taken by %s",
+            id, type.getName(), registration == null ? null : registration.getType().getName());
+    kryo.register(type, serializer, id);
+  }
+
   private void registerValueTypes(Kryo kryo) {
     for (Class<?> type : getValueTypes()) {
       kryo.register(type);
@@ -0,0 +1,24 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
+import com.github.rpc0.invoke.Cancel;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+public final class CancelSerializer extends ImmutableSerializer<Cancel> {
+
+  @Override
+  public void write(Kryo kryo, Output output, Cancel object) {
+    output.writeLong(object.getRequestId(), true);
+  }
+
+  @Override
+  public Cancel read(Kryo kryo, Input input, Class<? extends Cancel> type) {
+    return new Cancel(input.readLong(true));
+  }
+}
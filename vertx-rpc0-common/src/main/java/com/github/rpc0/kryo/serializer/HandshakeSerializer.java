@@ -0,0 +1,28 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
+import com.github.rpc0.invoke.Handshake;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-03
+ */
+public final class HandshakeSerializer extends ImmutableSerializer<Handshake> {
+
+  @Override
+  public void write(Kryo kryo, Output output, Handshake object) {
+    output.writeLong(object.getTimestamp(), true);
+    output.writeInt(object.getFeatures(), true);
+  }
+
+  @Override
+  public Handshake read(Kryo kryo, Input input, Class<? extends Handshake> type) {
+    long timestamp = input.readLong(true);
+    // absent from the handshake of an older client
+    int features = input.canReadVarInt() ? input.readInt(true) : 0;
+    return new Handshake(timestamp, features);
+  }
+}
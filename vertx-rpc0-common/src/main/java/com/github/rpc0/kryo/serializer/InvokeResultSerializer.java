@@ -1,23 +1,67 @@
 package com.github.rpc0.kryo.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
+import com.esotericsoftware.kryo.util.ObjectMap;
 import com.github.rpc0.invoke.InvokeResult;
 import com.github.rpc0.invoke.ResultCode;
+import com.google.common.primitives.Primitives;
+import lombok.NonNull;
+
+import java.util.function.LongFunction;
 
 /**
+ * A result of a final declared type ({@link InvokeResult#getResultType()}) is written without its class
+ * and without the absent error message, read against the type the client expects for the request.
+ *
  * @author fishzhao
  * @since 2021-12-16
  */
 public final class InvokeResultSerializer extends ImmutableSerializer<InvokeResult> {
 
+  // set on the code, the codes are far below
+  private static final int UNTAGGED = 0x40;
+  private static final Object RESULT_TYPES = new Object();
+  private static final LongFunction<Class<?>> NO_RESULT_TYPES = requestId -> null;
+
+  /**
+   * Set the expected result types of the pending requests, valid until the next object read by {@code kryo} ends.
+   */
+  public static void expectResultTypes(Kryo kryo, @NonNull LongFunction<Class<?>> resultTypes) {
+    @SuppressWarnings("unchecked")
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    graphContext.put(RESULT_TYPES, resultTypes);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static LongFunction<Class<?>> resultTypes(Kryo kryo) {
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    Object resultTypes = graphContext.get(RESULT_TYPES);
+    return resultTypes != null ? (LongFunction<Class<?>>) resultTypes : NO_RESULT_TYPES;
+  }
+
+  private static boolean canWriteUntagged(Kryo kryo, InvokeResult object) {
+    Class<?> resultType = object.getResultType();
+    Object result = object.getResult();
+    return resultType != null
+           && object.getErrorMessage() == null
+           && result != null
+           && result.getClass() == Primitives.wrap(resultType)
+           && ParameterArraySerializer.isUntagged(kryo, resultType);
+  }
 
   @Override
   public void write(Kryo kryo, Output output, InvokeResult object) {
     output.writeLong(object.getRequestId(), true);
     output.writeLong(object.getTimestamp(), true);
+    if (canWriteUntagged(kryo, object)) {
+      output.writeInt(object.getCode().ordinal() | UNTAGGED, true);
+      kryo.writeObject(output, object.getResult());
+      return;
+    }
     output.writeInt(object.getCode().ordinal(), true);
     output.writeString(object.getErrorMessage());
     kryo.writeClassAndObject(output, object.getResult());
@@ -25,13 +69,28 @@ public final class InvokeResultSerializer extends ImmutableSerializer<InvokeResu
 
   @Override
   public InvokeResult read(Kryo kryo, Input input, Class<? extends InvokeResult> type) {
-    return new InvokeResult(
-            input.readLong(true),
-            input.readLong(true),
-            ResultCode.forCode(input.readInt(true)),
-            input.readString(),
-            kryo.readClassAndObject(input)
-    );
+    long requestId = input.readLong(true);
+    long timestamp = input.readLong(true);
+    int code = input.readInt(true);
+    if ((code & UNTAGGED) == 0) {
+      return new InvokeResult(
+              requestId,
+              timestamp,
+              ResultCode.forCode(code),
+              input.readString(),
+              kryo.readClassAndObject(input)
+      );
+    }
+    Class<?> resultType = resultTypes(kryo).apply(requestId);
+    Object result = null;
+    // the late result of a request not pending anymore is left unread
+    if (resultType != null) {
+      if (!ParameterArraySerializer.isUntagged(kryo, resultType)) {
+        throw new KryoException("Untagged result of request " + requestId + ", but expected: " + resultType);
+      }
+      result = kryo.readObject(input, Primitives.wrap(resultType));
+    }
+    return new InvokeResult(requestId, timestamp, ResultCode.forCode(code & ~UNTAGGED), null, result);
   }
 
 }
@@ -4,25 +4,81 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.github.rpc0.invoke.Handshake;
 import com.github.rpc0.invoke.InvokeSpec;
 import com.github.rpc0.invoke.ParameterArray;
+import lombok.NonNull;
 
 import java.lang.invoke.MethodType;
+import java.util.function.IntFunction;
 
 /**
+ * The parameters are written against the method type, which the reader of a negotiated method id
+ * resolves by {@code methodTypes}, once the reader announced {@link Handshake#UNTAGGED_PARAMETERS}.
+ * <p>
+ * Once the reader announced {@link Handshake#DEADLINES}, the budget left from the timestamp of the request
+ * to its deadline follows a zero timestamp, which no request has. The reader anchors it to the arrival of the request,
+ * whatever the skew of the clocks, a request read past its deadline is left without its parameters,
+ * so an expired request costs the server no parameter deserialization.
+ *
  * @author fishzhao
  * @since 2021-12-14
  */
 public final class InvokeSpecSerializer extends ImmutableSerializer<InvokeSpec> {
 
+  private static final Object PEER_FEATURES = new Object();
+  // in place of the timestamp, which follows with the budget
+  private static final long BUDGET_MARK = 0L;
+
+  private final IntFunction<MethodType> methodTypes;
+
+  public InvokeSpecSerializer(@NonNull IntFunction<MethodType> methodTypes) {
+    this.methodTypes = methodTypes;
+  }
+
+  public InvokeSpecSerializer() {
+    this(methodId -> null);
+  }
+
+  /**
+   * Set the features announced by the handshake of the reader, valid until the next object written by {@code kryo} ends.
+   */
+  public static void writeFor(Kryo kryo, int features) {
+    @SuppressWarnings("unchecked")
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    graphContext.put(PEER_FEATURES, features);
+  }
+
+  private static boolean peerSupports(Kryo kryo, int feature) {
+    @SuppressWarnings("unchecked")
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    Object features = graphContext.get(PEER_FEATURES);
+    return features != null && ((int) features & feature) == feature;
+  }
+
   @Override
   public void write(Kryo kryo, Output output, InvokeSpec spec) {
     output.writeLong(spec.getRequestId(), true);
-    output.writeLong(spec.getTimestamp(), true);
-    output.writeString(spec.getCallSiteClassName());
-    output.writeString(spec.getMethodName());
-    kryo.writeObject(output, spec.getMethodType());
-    kryo.writeObject(output, spec.getParameters());
+    if (spec.hasDeadline() && peerSupports(kryo, Handshake.DEADLINES)) {
+      output.writeLong(BUDGET_MARK, true);
+      output.writeLong(spec.getTimestamp(), true);
+      output.writeLong(Math.max(spec.getDeadline() - spec.getTimestamp(), 0L), true);
+    } else {
+      output.writeLong(spec.getTimestamp(), true);
+    }
+    if (spec.hasMethodId()) {
+      // a null class name marks the negotiated method id
+      output.writeString(null);
+      output.writeInt(spec.getMethodId(), true);
+    } else {
+      output.writeString(spec.getCallSiteClassName());
+      output.writeString(spec.getMethodName());
+      kryo.writeObject(output, spec.getMethodType());
+    }
+    // a reader without the feature reads the tagged parameters only
+    MethodType parameterTypes = peerSupports(kryo, Handshake.UNTAGGED_PARAMETERS) ? spec.getMethodType() : null;
+    ParameterArraySerializer.write(kryo, output, spec.getParameters(), parameterTypes);
   }
 
   @Override
@@ -30,16 +86,40 @@ public final class InvokeSpecSerializer extends ImmutableSerializer<InvokeSpec>
 
     long requestId = input.readLong(true);
     long timestamp = input.readLong(true);
+    long arrival = System.currentTimeMillis();
+    long deadline = InvokeSpec.NO_DEADLINE;
+    if (timestamp == BUDGET_MARK) {
+      timestamp = input.readLong(true);
+      deadline = arrival + input.readLong(true);
+    }
     String callSiteClassName = input.readString();
-    String methodName = input.readString();
-    MethodType methodType = kryo.readObject(input, MethodType.class);
-    ParameterArray parameterArray = kryo.readObject(input, ParameterArray.class);
+    String methodName = null;
+    MethodType methodType = null;
+    int methodId = InvokeSpec.NO_METHOD_ID;
+    MethodType parameterTypes;
+    if (callSiteClassName == null) {
+      methodId = input.readInt(true);
+      parameterTypes = methodTypes.apply(methodId);
+    } else {
+      methodName = input.readString();
+      methodType = kryo.readObject(input, MethodType.class);
+      parameterTypes = methodType;
+    }
+    InvokeSpec spec = new InvokeSpec(
+            requestId, timestamp, deadline, callSiteClassName, methodName, methodType, methodId, null);
+    if (spec.isExpired(arrival)) {
+      // the parameters are left unread in the frame
+      return spec;
+    }
+    ParameterArray parameterArray = ParameterArraySerializer.read(kryo, input, parameterTypes);
     return new InvokeSpec(
             requestId,
             timestamp,
+            deadline,
             callSiteClassName,
             methodName,
             methodType,
+            methodId,
             parameterArray
     );
   }
@@ -0,0 +1,38 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
+import com.github.rpc0.invoke.MethodTable;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-03
+ */
+public final class MethodTableSerializer extends ImmutableSerializer<MethodTable> {
+
+  @Override
+  public void write(Kryo kryo, Output output, MethodTable object) {
+    Map<String, Integer> methodIds = object.getMethodIds();
+    output.writeInt(methodIds.size() + 1, true);
+    for (Map.Entry<String, Integer> entry : methodIds.entrySet()) {
+      output.writeString(entry.getKey());
+      output.writeInt(entry.getValue(), true);
+    }
+  }
+
+  @Override
+  public MethodTable read(Kryo kryo, Input input, Class<? extends MethodTable> type) {
+    int size = input.readInt(true) - 1;
+    Map<String, Integer> methodIds = Maps.newLinkedHashMapWithExpectedSize(size);
+    for (int i = 0; i < size; ++i) {
+      String signature = input.readString();
+      methodIds.put(signature, input.readInt(true));
+    }
+    return new MethodTable(methodIds);
+  }
+}
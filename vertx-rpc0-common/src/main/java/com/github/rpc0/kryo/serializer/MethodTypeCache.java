@@ -0,0 +1,97 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.google.common.base.Preconditions;
+
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded caches of {@link MethodTypeSerializer}, shared by the Kryo instances of one registration,
+ * since the encoded bytes hold the class ids.
+ * <p>
+ * Both are direct-mapped tables, a colliding method type replaces the cached one.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+public final class MethodTypeCache {
+
+  private static final int DEFAULT_CAPACITY = 512;
+
+  private final AtomicReferenceArray<Encoded> encoded;
+  private final AtomicReferenceArray<MethodType> decoded;
+  private final int mask;
+
+  public MethodTypeCache(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Illegal capacity: %s", capacity);
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.encoded = new AtomicReferenceArray<>(size);
+    this.decoded = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  public MethodTypeCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  byte[] getEncoded(MethodType methodType) {
+    Encoded entry = encoded.get(spread(methodType.hashCode()) & mask);
+    return entry != null && entry.methodType.equals(methodType) ? entry.bytes : null;
+  }
+
+  void putEncoded(MethodType methodType, byte[] bytes) {
+    encoded.set(spread(methodType.hashCode()) & mask, new Encoded(methodType, bytes));
+  }
+
+  /**
+   * @return the method type of {@code returnType} and the first {@code parameterCnt} of {@code parameterTypes}
+   */
+  MethodType getDecoded(Class<?> returnType, Class<?>[] parameterTypes, int parameterCnt) {
+    int index = spread(hashOf(returnType, parameterTypes, parameterCnt)) & mask;
+    MethodType methodType = decoded.get(index);
+    if (methodType == null || !matches(methodType, returnType, parameterTypes, parameterCnt)) {
+      methodType = MethodType.methodType(returnType, Arrays.copyOf(parameterTypes, parameterCnt));
+      decoded.set(index, methodType);
+    }
+    return methodType;
+  }
+
+  private static int hashOf(Class<?> returnType, Class<?>[] parameterTypes, int parameterCnt) {
+    int hash = 31 + returnType.hashCode();
+    for (int i = 0; i < parameterCnt; ++i) {
+      hash = 31 * hash + parameterTypes[i].hashCode();
+    }
+    return hash;
+  }
+
+  private static boolean matches(MethodType methodType,
+                                 Class<?> returnType,
+                                 Class<?>[] parameterTypes,
+                                 int parameterCnt) {
+    if (methodType.returnType() != returnType || methodType.parameterCount() != parameterCnt) {
+      return false;
+    }
+    for (int i = 0; i < parameterCnt; ++i) {
+      if (methodType.parameterType(i) != parameterTypes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final class Encoded {
+
+    private final MethodType methodType;
+    private final byte[] bytes;
+
+    private Encoded(MethodType methodType, byte[] bytes) {
+      this.methodType = methodType;
+      this.bytes = bytes;
+    }
+  }
+}
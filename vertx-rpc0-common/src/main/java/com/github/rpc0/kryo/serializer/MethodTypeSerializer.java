@@ -1,30 +1,58 @@
 package com.github.rpc0.kryo.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
 import com.google.common.primitives.Primitives;
+import lombok.NonNull;
 
 import java.lang.invoke.MethodType;
-import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.List;
 
 /**
+ * Encoded method types and decoded ones are cached in a {@link MethodTypeCache},
+ * the scratch arrays make an instance confined to the thread of its Kryo.
+ *
  * @author fishzhao
  * @since 2021-12-13
  */
 public final class MethodTypeSerializer extends ImmutableSerializer<MethodType> {
 
+  // the limit of the jvm
+  private static final int MAX_PARAMETER_CNT = 255;
+
+  private final MethodTypeCache cache;
+  private final byte[] isPrimitiveAt = new byte[(MAX_PARAMETER_CNT + 1 + 7) / 8];
+  private final Class<?>[] parameterTypes = new Class<?>[MAX_PARAMETER_CNT];
+
+  public MethodTypeSerializer(@NonNull MethodTypeCache cache) {
+    this.cache = cache;
+  }
+
+  public MethodTypeSerializer() {
+    this(new MethodTypeCache());
+  }
+
   @Override
   public void write(Kryo kryo, Output output, MethodType methodType) {
+    byte[] bytes = cache.getEncoded(methodType);
+    if (bytes == null) {
+      bytes = encode(kryo, methodType);
+      cache.putEncoded(methodType, bytes);
+    }
+    output.writeBytes(bytes);
+  }
+
+  private static byte[] encode(Kryo kryo, MethodType methodType) {
     int parameterCnt = methodType.parameterCount();
     BitSet isPrimitiveAt = new BitSet(parameterCnt + 1);
     isPrimitiveAt.set(0, methodType.returnType().isPrimitive());
     for (int i = 0; i < parameterCnt; ++i) {
       isPrimitiveAt.set(i + 1, methodType.parameterType(i).isPrimitive());
     }
+    Output output = new Output(32, -1);
     output.writeInt(parameterCnt, true);
     byte[] bytes = isPrimitiveAt.toByteArray();
     output.writeInt(bytes.length + 1, true);
@@ -33,22 +61,34 @@ public final class MethodTypeSerializer extends ImmutableSerializer<MethodType>
     for (int i = 0; i < parameterCnt; ++i) {
       kryo.writeClass(output, methodType.parameterType(i));
     }
+    return output.toBytes();
   }
 
   @Override
   public MethodType read(Kryo kryo, Input input, Class<? extends MethodType> aClass) {
     int parameterCnt = input.readInt(true);
     int bytesLen = input.readInt(true) - 1;
-    BitSet isPrimitiveAt = BitSet.valueOf(input.readBytes(bytesLen));
-    Class<?> returnType = kryo.readClass(input).getType();
-    if (parameterCnt == 0) {
-      return MethodType.methodType(wrap(returnType, isPrimitiveAt.get(0)));
+    if (parameterCnt < 0 || parameterCnt > MAX_PARAMETER_CNT || bytesLen < 0 || bytesLen > isPrimitiveAt.length) {
+      throw new KryoException("Illegal method type of " + parameterCnt + " parameters");
     }
-    List<Class<?>> parameterTypes = new ArrayList<>(parameterCnt);
+    // BitSet#toByteArray omits the trailing zeros
+    input.readBytes(isPrimitiveAt, 0, bytesLen);
+    for (int i = bytesLen; i < isPrimitiveAt.length; ++i) {
+      isPrimitiveAt[i] = 0;
+    }
+    Class<?> returnType = wrap(kryo.readClass(input).getType(), isPrimitiveAt(0));
     for (int i = 0; i < parameterCnt; ++i) {
-      parameterTypes.add(wrap(kryo.readClass(input).getType(), isPrimitiveAt.get(i + 1)));
+      parameterTypes[i] = wrap(kryo.readClass(input).getType(), isPrimitiveAt(i + 1));
     }
-    return MethodType.methodType(wrap(returnType, isPrimitiveAt.get(0)), parameterTypes);
+    MethodType methodType = cache.getDecoded(returnType, parameterTypes, parameterCnt);
+    for (int i = 0; i < parameterCnt; ++i) {
+      parameterTypes[i] = null;
+    }
+    return methodType;
+  }
+
+  private boolean isPrimitiveAt(int index) {
+    return (isPrimitiveAt[index >>> 3] & (1 << (index & 7))) != 0;
   }
 
   private Class<?> wrap(Class<?> type, boolean isPrimitive) {
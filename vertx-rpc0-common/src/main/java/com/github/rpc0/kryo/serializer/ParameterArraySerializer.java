@@ -1,17 +1,99 @@
 package com.github.rpc0.kryo.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.ImmutableSerializer;
 import com.github.rpc0.invoke.ParameterArray;
+import com.google.common.primitives.Primitives;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
 
 /**
+ * Every parameter is written with its class, unless written against the declared parameter types
+ * by {@link #write(Kryo, Output, ParameterArray, MethodType)}.
+ *
  * @author fishzhao
  * @since 2021-12-22
  */
 public final class ParameterArraySerializer extends ImmutableSerializer<ParameterArray> {
 
+  /**
+   * The class of a parameter is omitted if its declared type is primitive, or final and registered,
+   * since the reader knows it from the method type.
+   */
+  static boolean isUntagged(Kryo kryo, Class<?> declaredType) {
+    return declaredType.isPrimitive()
+           || (Modifier.isFinal(declaredType.getModifiers())
+               && kryo.getClassResolver().getRegistration(declaredType) != null);
+  }
+
+  // every untagged parameter must be present and exactly of the declared type
+  private static boolean canWriteUntagged(Kryo kryo, ParameterArray parameters, MethodType methodType) {
+    int size = parameters.size();
+    if (size == 0 || size != methodType.parameterCount()) {
+      return false;
+    }
+    for (int i = 0; i < size; ++i) {
+      Class<?> declaredType = methodType.parameterType(i);
+      if (isUntagged(kryo, declaredType)) {
+        Object param = parameters.get(i);
+        if (param == null || param.getClass() != Primitives.wrap(declaredType)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Write the parameters of a call to a method of {@code methodType}, the classes of final or primitive parameters
+   * are omitted, falls back to the tagged encoding if a parameter is null or the method type is unknown.
+   */
+  public static void write(Kryo kryo, Output output, ParameterArray parameters, MethodType methodType) {
+    if (methodType == null || !canWriteUntagged(kryo, parameters, methodType)) {
+      kryo.writeObject(output, parameters);
+      return;
+    }
+    // where the tagged array would have been written as a not null object
+    output.writeByte(Kryo.NULL);
+    for (int i = 0; i < parameters.size(); ++i) {
+      Object param = parameters.get(i);
+      if (isUntagged(kryo, methodType.parameterType(i))) {
+        kryo.writeObject(output, param);
+      } else {
+        kryo.writeClassAndObject(output, param);
+      }
+    }
+  }
+
+  /**
+   * Read the parameters written by {@link #write(Kryo, Output, ParameterArray, MethodType)}.
+   *
+   * @param methodType the method type of the call, null if unknown to the reader
+   */
+  public static ParameterArray read(Kryo kryo, Input input, MethodType methodType) {
+    ParameterArray tagged = kryo.readObjectOrNull(input, ParameterArray.class);
+    if (tagged != null) {
+      return tagged;
+    }
+    if (methodType == null) {
+      throw new KryoException("Untagged parameters of an unknown method type");
+    }
+    Object[] parameters = new Object[methodType.parameterCount()];
+    for (int i = 0; i < parameters.length; ++i) {
+      Class<?> declaredType = methodType.parameterType(i);
+      if (isUntagged(kryo, declaredType)) {
+        parameters[i] = kryo.readObject(input, Primitives.wrap(declaredType));
+      } else {
+        parameters[i] = kryo.readClassAndObject(input);
+      }
+    }
+    return ParameterArray.wrap(parameters);
+  }
+
   @Override
   public void write(Kryo kryo, Output output, ParameterArray object) {
     output.writeInt(object.size() + 1, true);
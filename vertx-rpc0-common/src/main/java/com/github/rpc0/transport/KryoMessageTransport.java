@@ -2,20 +2,18 @@ package com.github.rpc0.transport;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
+import com.github.rpc0.kryo.ByteBufInput;
+import com.github.rpc0.kryo.ByteBufOutput;
+import com.github.rpc0.kryo.serializer.InvokeResultSerializer;
+import com.github.rpc0.kryo.serializer.InvokeSpecSerializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.FastThreadLocal;
 import lombok.NonNull;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Objects;
+import java.util.function.LongFunction;
 import java.util.function.Supplier;
 
 /**
@@ -24,6 +22,20 @@ import java.util.function.Supplier;
  */
 public final class KryoMessageTransport implements MessageTransport {
 
+  // read and write the ByteBuf memory in place, shared by all transports of the thread
+  private static final FastThreadLocal<ByteBufOutput> OUTPUT = new FastThreadLocal<>() {
+    @Override
+    protected ByteBufOutput initialValue() {
+      return new ByteBufOutput();
+    }
+  };
+  private static final FastThreadLocal<ByteBufInput> INPUT = new FastThreadLocal<>() {
+    @Override
+    protected ByteBufInput initialValue() {
+      return new ByteBufInput();
+    }
+  };
+
   private final FastThreadLocal<Kryo> kryoFastThreadLocal;
 
   public KryoMessageTransport(@NonNull Supplier<? extends Kryo> factory) {
@@ -46,10 +58,34 @@ public final class KryoMessageTransport implements MessageTransport {
 
   @Override
   public ByteBuf serialize(@NonNull ByteBufAllocator allocator, MessageExchange obj) {
+    return serialize(allocator, obj, false, 0);
+  }
+
+  // the prefix is reserved in front of the body then backfilled, so the frame is one contiguous buffer
+  @Override
+  public ByteBuf serializeFrame(@NonNull ByteBufAllocator allocator, MessageExchange obj) {
+    return serialize(allocator, obj, true, 0);
+  }
+
+  @Override
+  public ByteBuf serializeFrame(@NonNull ByteBufAllocator allocator, MessageExchange obj, int features) {
+    return serialize(allocator, obj, true, features);
+  }
+
+  private ByteBuf serialize(ByteBufAllocator allocator, MessageExchange obj, boolean withPrefix, int features) {
     ByteBuf byteBuf = allocator.buffer();
-    try (OutputStream outputStream = new ByteBufOutputStream(byteBuf)) {
-      try (Output output = new Output(outputStream)) {
-        getKryo().writeClassAndObject(output, obj);
+    ByteBufOutput output = OUTPUT.get();
+    try {
+      int prefixIndex = withPrefix ? Prefix.reserve(byteBuf) : -1;
+      output.setByteBuf(byteBuf);
+      Kryo kryo = getKryo();
+      if (features != 0) {
+        InvokeSpecSerializer.writeFor(kryo, features);
+      }
+      kryo.writeClassAndObject(output, obj);
+      output.flush();
+      if (withPrefix) {
+        Prefix.fill(byteBuf, prefixIndex);
       }
     } catch (Exception e) {
       ReferenceCountUtil.release(byteBuf);
@@ -58,19 +94,24 @@ public final class KryoMessageTransport implements MessageTransport {
       } else {
         throw new KryoException("Exception while serializing msg:", e);
       }
+    } finally {
+      output.clear();
     }
     return byteBuf;
   }
 
   @Override
-  public MessageExchange deserialize(@NonNull ByteBuf byteBuf) {
-    try (InputStream inputStream = new ByteBufInputStream(byteBuf)) {
-      try (Input input = new Input(inputStream)) {
-        return (MessageExchange) getKryo().readClassAndObject(input);
-      }
-    } catch (IOException e) {
-      throw new KryoException("Exception while deserializing msg:", e);
+  public MessageExchange deserialize(@NonNull ByteBuf byteBuf, @NonNull LongFunction<Class<?>> resultTypes) {
+    ByteBufInput input = INPUT.get();
+    try {
+      input.setByteBuf(byteBuf);
+      Kryo kryo = getKryo();
+      InvokeResultSerializer.expectResultTypes(kryo, resultTypes);
+      MessageExchange message = (MessageExchange) kryo.readClassAndObject(input);
+      byteBuf.skipBytes(input.position());
+      return message;
     } finally {
+      input.clear();
       ReferenceCountUtil.release(byteBuf);
     }
   }
@@ -0,0 +1,119 @@
+package com.github.rpc0.transport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.ReferenceCountUtil;
+import io.vertx.core.Handler;
+import io.vertx.core.VertxException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.impl.NetSocketInternal;
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * Netty counterpart of {@link MarkedLenMessageHandler}, decodes frames in the channel pipeline,
+ * every frame body is a retained slice of the inbound buffer, and all frames of a read are decoded in one pass.
+ * <p>
+ * Frames are passed as {@link ByteBufHolder}s, which Vert.x hands to the message handler of the socket as is,
+ * while a plain {@link ByteBuf} would be copied to heap.
+ *
+ * @author fishzhao
+ * @since 2022-03-08
+ */
+public final class MarkedLenFrameDecoder extends ByteToMessageDecoder {
+
+  private final int maxMsgLen;
+  private boolean corrupted = false;
+
+  public MarkedLenFrameDecoder(int maxMsgLen) {
+    Preconditions.checkArgument(maxMsgLen > 0, "Illegal maxMsgLen: %s", maxMsgLen);
+    this.maxMsgLen = maxMsgLen;
+  }
+
+  public MarkedLenFrameDecoder() {
+    this(MarkedLenMessageHandler.DEFAULT_MAX_MSG_LEN);
+  }
+
+  /**
+   * Install the decoder in front of the Vert.x handler of the socket, frames are delivered to the {@code parserHandler}.
+   */
+  public static void install(@NonNull NetSocketInternal socket, @NonNull ParserHandler parserHandler, int maxMsgLen) {
+    ChannelHandlerContext ctx = socket.channelHandlerContext();
+    socket.messageHandler(new FrameHandler(parserHandler));
+    ctx.pipeline().addBefore(ctx.name(), "rpc0FrameDecoder", new MarkedLenFrameDecoder(maxMsgLen));
+  }
+
+  public static void install(NetSocketInternal socket, ParserHandler parserHandler) {
+    install(socket, parserHandler, MarkedLenMessageHandler.DEFAULT_MAX_MSG_LEN);
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    if (corrupted) {
+      in.skipBytes(in.readableBytes());
+      return;
+    }
+    int prefixLen = Prefix.prefixLen();
+    int readerIndex = in.readerIndex();
+    if (in.readableBytes() < prefixLen) {
+      return;
+    }
+    if (!Prefix.isMagicMatch(in, readerIndex)) {
+      corrupt(in, out, Strings.lenientFormat("Unknown protocol magic: %s",
+              ByteBufUtil.hexDump(in, readerIndex, 2)));
+      return;
+    }
+    int msgLen = in.getInt(readerIndex + 2);
+    if (msgLen < 0 || msgLen > maxMsgLen) {
+      corrupt(in, out, Strings.lenientFormat("Invalid msgLen: %s", msgLen));
+      return;
+    }
+    if (in.readableBytes() - prefixLen < msgLen) {
+      return;
+    }
+    in.skipBytes(prefixLen);
+    out.add(new DefaultByteBufHolder(in.readRetainedSlice(msgLen)));
+  }
+
+  // the error goes after the frames decoded before, nothing is decoded anymore
+  private void corrupt(ByteBuf in, List<Object> out, String message) {
+    corrupted = true;
+    in.skipBytes(in.readableBytes());
+    out.add(new VertxException(message, true));
+  }
+
+  private static final class FrameHandler implements Handler<Object> {
+
+    private final ParserHandler parserHandler;
+
+    private FrameHandler(ParserHandler parserHandler) {
+      this.parserHandler = parserHandler;
+    }
+
+    @Override
+    public void handle(Object msg) {
+      if (msg instanceof ByteBufHolder) {
+        ByteBuf byteBuf = ((ByteBufHolder) msg).content();
+        try {
+          parserHandler.handle(Buffer.buffer(byteBuf));
+        } catch (Exception e) {
+          parserHandler.fetal(e);
+        } finally {
+          // Buffer#getByteBuf() is unreleasable, the frame is decoded synchronously so release it here
+          byteBuf.release();
+        }
+      } else if (msg instanceof Throwable) {
+        parserHandler.fetal((Throwable) msg);
+      } else {
+        ReferenceCountUtil.release(msg);
+      }
+    }
+  }
+}
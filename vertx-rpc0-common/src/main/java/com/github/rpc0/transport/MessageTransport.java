@@ -3,6 +3,8 @@ package com.github.rpc0.transport;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
+import java.util.function.LongFunction;
+
 /**
  * @author fishzhao
  * @since 2021-12-15
@@ -15,5 +17,28 @@ public interface MessageTransport {
     return serialize(ByteBufAllocator.DEFAULT, object);
   }
 
-  MessageExchange deserialize(ByteBuf byteBuf);
+  /**
+   * Serialize the message with its {@link Prefix}, ready to be written as a frame.
+   */
+  default ByteBuf serializeFrame(ByteBufAllocator allocator, MessageExchange object) {
+    return Prefix.prependTo(serialize(allocator, object));
+  }
+
+  /**
+   * Serialize the message as a frame, with the optional encodings of {@code features}
+   * the peer announced by its handshake, a transport without optional encodings ignores them.
+   */
+  default ByteBuf serializeFrame(ByteBufAllocator allocator, MessageExchange object, int features) {
+    return serializeFrame(allocator, object);
+  }
+
+  default MessageExchange deserialize(ByteBuf byteBuf) {
+    return deserialize(byteBuf, requestId -> null);
+  }
+
+  /**
+   * @param resultTypes the result types expected by the pending requests, null for an unknown request id,
+   *                    to read a result written without its class
+   */
+  MessageExchange deserialize(ByteBuf byteBuf, LongFunction<Class<?>> resultTypes);
 }
@@ -38,6 +38,28 @@ public final class Prefix implements Serializable {
     }
   }
 
+  /**
+   * Reserve the prefix at the writer index, to be filled by {@link #fill(ByteBuf, int)} once the body is written.
+   *
+   * @return the index of the prefix
+   */
+  public static int reserve(ByteBuf byteBuf) {
+    int index = byteBuf.writerIndex();
+    byteBuf.writeZero(prefixLen());
+    return index;
+  }
+
+  public static void fill(ByteBuf byteBuf, int index) {
+    int len = byteBuf.writerIndex() - index - prefixLen();
+    byteBuf.setBytes(index, MAGIC);
+    byteBuf.setInt(index + MAGIC.length, len);
+  }
+
+  public static boolean isMagicMatch(ByteBuf byteBuf, int index) {
+    return byteBuf.getByte(index) == MAGIC[0]
+           && byteBuf.getByte(index + 1) == MAGIC[1];
+  }
+
   public static boolean isMagicMatch(byte[] magic) {
     return magic.length == 2
            && magic[0] == MAGIC[0]
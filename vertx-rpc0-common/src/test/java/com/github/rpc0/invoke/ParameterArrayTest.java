@@ -44,6 +44,8 @@ public class ParameterArrayTest {
 
     assertEquals(Collections.emptyList(), ParameterArray.create());
     assertEquals(Collections.singletonList(1), ParameterArray.create(new Object[]{1}));
+    assertEquals(Collections.emptyList(), ParameterArray.wrap(null));
+    assertEquals(Collections.singletonList(1), ParameterArray.wrap(new Object[]{1}));
     assertEquals(new ArrayList<>(b), b);
   }
 
@@ -0,0 +1,101 @@
+package com.github.rpc0.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.transport.KryoMessageTransport;
+import com.github.rpc0.transport.MessageTransport;
+import com.google.common.base.Strings;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-04
+ */
+public class ByteBufIOTest {
+
+  private final Kryo kryo = new KryoFactory().get();
+
+  private final Object[] objects = new Object[]{
+          1,
+          Math.PI,
+          "hello",
+          Strings.repeat("world", 1000),
+          Arrays.asList(1L, 2L, 3L),
+          LocalDateTime.now()
+  };
+
+  private void verify(ByteBuf byteBuf) {
+    try {
+      ByteBufOutput output = new ByteBufOutput(byteBuf);
+      for (Object o : objects) {
+        kryo.writeClassAndObject(output, o);
+      }
+      output.flush();
+      assertEquals(output.total(), byteBuf.readableBytes());
+
+      Output reference = new Output(256, -1);
+      for (Object o : objects) {
+        kryo.writeClassAndObject(reference, o);
+      }
+      assertArrayEquals(reference.toBytes(), ByteBufUtil.getBytes(byteBuf));
+
+      ByteBufInput input = new ByteBufInput(byteBuf);
+      for (Object o : objects) {
+        assertEquals(o, kryo.readClassAndObject(input));
+      }
+      assertEquals(byteBuf.readableBytes(), input.position());
+
+      Input referenceInput = new Input(reference.toBytes());
+      for (Object o : objects) {
+        assertEquals(o, kryo.readClassAndObject(referenceInput));
+      }
+    } finally {
+      byteBuf.release();
+    }
+  }
+
+  @Test
+  public void testHeap() {
+    verify(UnpooledByteBufAllocator.DEFAULT.heapBuffer(8));
+    verify(PooledByteBufAllocator.DEFAULT.heapBuffer(8));
+  }
+
+  @Test
+  public void testDirect() {
+    verify(UnpooledByteBufAllocator.DEFAULT.directBuffer(8));
+    verify(PooledByteBufAllocator.DEFAULT.directBuffer(8));
+  }
+
+  @Test
+  public void testTransport() {
+    MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+    InvokeSpec invokeSpec = new InvokeSpec(
+            1L,
+            System.currentTimeMillis(),
+            CharSequence.class.getTypeName(),
+            "charAt",
+            MethodType.methodType(char.class, int.class),
+            ParameterArray.create(new Object[]{13})
+    );
+    for (ByteBufAllocator allocator : Arrays.asList(UnpooledByteBufAllocator.DEFAULT, PooledByteBufAllocator.DEFAULT)) {
+      ByteBuf byteBuf = transport.serialize(allocator, invokeSpec);
+      assertEquals(invokeSpec, transport.deserialize(byteBuf));
+      assertEquals(0, byteBuf.refCnt());
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.github.rpc0.kryo;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.IntMap;
 import com.esotericsoftware.minlog.Log;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -10,10 +11,15 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.github.rpc0.invoke.Cancel;
+import com.github.rpc0.invoke.Handshake;
 import com.github.rpc0.invoke.InvokeResult;
 import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.MethodTable;
 import com.github.rpc0.invoke.ParameterArray;
 import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.kryo.serializer.InvokeSpecSerializer;
+import com.github.rpc0.model.User;
 import io.netty.util.internal.PlatformDependent;
 import lombok.SneakyThrows;
 import org.junit.Test;
@@ -43,8 +49,10 @@ import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class KryoFactoryTest {
 
@@ -53,20 +61,31 @@ public class KryoFactoryTest {
     Log.DEBUG();
   }
 
-  private final Kryo kryo = new KryoFactory().get();
+  // resolves the method id of verifyInvokeSpecWithMethodId
+  private final Kryo kryo = new KryoFactory(Kryo.class.getClassLoader(), new TrustedTypeKryoRegistry(),
+          methodId -> methodId == 7 ? MethodType.methodType(char.class, int.class) : null).get();
 
   @SneakyThrows
-  @SuppressWarnings("unchecked")
-  private <T> T roundtrip(T o) {
+  private byte[] serialize(Object o, int peerFeatures) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     try (Output output = new Output(out)) {
+      InvokeSpecSerializer.writeFor(kryo, peerFeatures);
       kryo.writeClassAndObject(output, o);
     }
-    try (Input input = new Input(out.toByteArray())) {
+    return out.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T deserialize(byte[] bytes) {
+    try (Input input = new Input(bytes)) {
       return (T) kryo.readClassAndObject(input);
     }
   }
 
+  private <T> T roundtrip(T o) {
+    return deserialize(serialize(o, 0));
+  }
+
 
   @Test
   public void verifyList() {
@@ -209,6 +228,155 @@ public class KryoFactoryTest {
     assertEquals(origin, kryo.copy(target));
   }
 
+  @Test
+  public void verifyInvokeSpecWithMethodId() {
+    ParameterArray parameters = ParameterArray.create(new Object[]{13});
+    InvokeSpec origin = new InvokeSpec(
+            1L,
+            System.currentTimeMillis(),
+            CharSequence.class.getTypeName(),
+            "charAt",
+            MethodType.methodType(char.class, int.class),
+            7,
+            parameters
+    );
+    InvokeSpec target = roundtrip(origin);
+
+    assertNotSame(origin, target);
+    assertEquals(new InvokeSpec(origin.getRequestId(), origin.getTimestamp(), null, null, null, 7, parameters), target);
+  }
+
+  @Test
+  public void verifyUntaggedParametersForPeer() {
+    ParameterArray parameters = ParameterArray.create(new Object[]{13});
+    InvokeSpec origin = new InvokeSpec(
+            1L,
+            System.currentTimeMillis(),
+            CharSequence.class.getTypeName(),
+            "charAt",
+            MethodType.methodType(char.class, int.class),
+            7,
+            parameters
+    );
+    byte[] tagged = serialize(origin, 0);
+    byte[] untagged = serialize(origin, Handshake.UNTAGGED_PARAMETERS);
+
+    // either is read, the reader of the tagged one does not need the method type
+    assertTrue(untagged.length < tagged.length);
+    InvokeSpec expected = new InvokeSpec(origin.getRequestId(), origin.getTimestamp(), null, null, null, 7, parameters);
+    assertEquals(expected, deserialize(tagged));
+    assertEquals(expected, deserialize(untagged));
+  }
+
+  private static InvokeSpec specWithDeadline(long timestamp, long deadline) {
+    return new InvokeSpec(
+            1L,
+            timestamp,
+            deadline,
+            CharSequence.class.getTypeName(),
+            "charAt",
+            MethodType.methodType(char.class, int.class),
+            InvokeSpec.NO_METHOD_ID,
+            ParameterArray.create(new Object[]{13})
+    );
+  }
+
+  @Test
+  public void verifyInvokeSpecWithDeadline() {
+    // the clock of the client an hour behind
+    long timestamp = System.currentTimeMillis() - 3_600_000L;
+    InvokeSpec origin = specWithDeadline(timestamp, timestamp + 60_000L);
+    long before = System.currentTimeMillis();
+    InvokeSpec target = deserialize(serialize(origin, Handshake.DEADLINES));
+    long after = System.currentTimeMillis();
+
+    // the budget is anchored to the arrival
+    assertEquals(origin.getTimestamp(), target.getTimestamp());
+    assertEquals(origin.getParameters(), target.getParameters());
+    assertTrue(target.getDeadline() >= before + 60_000L && target.getDeadline() <= after + 60_000L);
+    assertFalse(target.isExpired(after));
+  }
+
+  @Test
+  public void verifyExpiredInvokeSpec() {
+    long timestamp = System.currentTimeMillis();
+    InvokeSpec target = deserialize(serialize(specWithDeadline(timestamp, timestamp - 1_000L), Handshake.DEADLINES));
+
+    // read without its parameters
+    assertNull(target.getParameters());
+    assertTrue(target.isExpired(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void verifyDeadlineForPeerWithoutDeadlines() {
+    long timestamp = System.currentTimeMillis();
+    InvokeSpec origin = specWithDeadline(timestamp, timestamp + 60_000L);
+    InvokeSpec target = roundtrip(origin);
+
+    // the request of the format every server reads
+    assertFalse(target.hasDeadline());
+    assertEquals(origin.getParameters(), target.getParameters());
+    assertTrue(serialize(origin, 0).length < serialize(origin, Handshake.DEADLINES).length);
+  }
+
+  @Test
+  public void verifyOneWayInvokeSpec() {
+    InvokeSpec origin = new InvokeSpec(
+            InvokeSpec.ONE_WAY_REQUEST_ID,
+            System.currentTimeMillis(),
+            CharSequence.class.getTypeName(),
+            "charAt",
+            MethodType.methodType(char.class, int.class),
+            ParameterArray.create(new Object[]{13})
+    );
+    InvokeSpec target = roundtrip(origin);
+
+    assertEquals(origin, target);
+    assertTrue(target.isOneWay());
+  }
+
+  @Test
+  public void verifyCancel() {
+    Cancel origin = new Cancel(Long.MAX_VALUE);
+    Cancel target = roundtrip(origin);
+
+    assertNotSame(origin, target);
+    assertEquals(origin, target);
+  }
+
+  @Test
+  public void verifyClassIds() {
+    IntMap<Class<?>> customTypes = new IntMap<>();
+    customTypes.put(1, User.class);
+    Kryo custom = new KryoFactory(Kryo.class.getClassLoader(), new TrustedTypeKryoRegistry(customTypes)).get();
+
+    // the custom type ids of the peers not knowing about the protocol types
+    assertEquals(92, custom.getRegistration(User.class).getId());
+    for (Class<?> type : Arrays.asList(Handshake.class, MethodTable.class, Cancel.class)) {
+      assertEquals(kryo.getRegistration(type).getId(), custom.getRegistration(type).getId());
+    }
+  }
+
+  @Test
+  public void verifyMethodTable() {
+    MethodTable origin = new MethodTable(ImmutableMap.of(
+            MethodTable.signatureOf(CharSequence.class.getTypeName(), "charAt",
+                    MethodType.methodType(Character.class, int.class)), 0,
+            MethodTable.signatureOf(CharSequence.class.getTypeName(), "length",
+                    MethodType.methodType(Integer.class)), 1
+    ));
+    MethodTable target = roundtrip(origin);
+
+    assertNotSame(origin, target);
+    assertEquals(origin, target);
+    assertEquals(1, target.methodIdOf(MethodTable.signatureOf(CharSequence.class.getTypeName(), "length",
+            MethodType.methodType(Integer.class))));
+    // another result type is not negotiated, its results are read tagged
+    assertEquals(InvokeSpec.NO_METHOD_ID, target.methodIdOf(MethodTable.signatureOf(CharSequence.class.getTypeName(),
+            "length", MethodType.methodType(Long.class))));
+    assertEquals(InvokeSpec.NO_METHOD_ID, target.methodIdOf("unknown"));
+  }
+
   @Test
   public void verifyInvokeResult() {
     InvokeResult origin = new InvokeResult(1, System.currentTimeMillis(), ResultCode.OK, "", LocalDateTime.now());
@@ -0,0 +1,71 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.github.rpc0.invoke.Handshake;
+import com.github.rpc0.invoke.InvokeResult;
+import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.kryo.KryoFactory;
+import com.github.rpc0.transport.KryoMessageTransport;
+import com.github.rpc0.transport.MessageTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InvokeResultSerializerTest {
+
+  private final MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+
+  private static InvokeResult ok(Object result, Class<?> resultType) {
+    return new InvokeResult(1, System.currentTimeMillis(), ResultCode.OK, null, result, resultType);
+  }
+
+  @Test
+  public void untaggedResult() {
+    InvokeResult result = ok("hello", String.class);
+    ByteBuf untagged = transport.serialize(result);
+    ByteBuf tagged = transport.serialize(ok("hello", null));
+    // neither the class nor the null error message
+    assertEquals(tagged.readableBytes() - 2, untagged.readableBytes());
+    tagged.release();
+
+    assertEquals(result, transport.deserialize(untagged, requestId -> requestId == 1 ? String.class : null));
+  }
+
+  @Test
+  public void unknownRequest() {
+    // the late result of a request timed out
+    InvokeResult result = (InvokeResult) transport.deserialize(transport.serialize(ok(42D, Double.class)), requestId -> null);
+    assertEquals(ResultCode.OK, result.getCode());
+    assertNull(result.getResult());
+  }
+
+  @Test
+  public void polymorphicResult() {
+    List<Integer> list = Arrays.asList(1, 2);
+    InvokeResult result = ok(list, List.class);
+    assertEquals(result, transport.deserialize(transport.serialize(result), requestId -> List.class));
+
+    InvokeResult error = new InvokeResult(1, System.currentTimeMillis(), ResultCode.INVOCATION_ERROR, "error", null, String.class);
+    assertEquals(error, transport.deserialize(transport.serialize(error), requestId -> String.class));
+  }
+
+  @Test
+  public void handshakeFeatures() {
+    Handshake handshake = new Handshake(System.currentTimeMillis(), Handshake.UNTAGGED_RESULTS);
+    Handshake target = (Handshake) transport.deserialize(transport.serialize(handshake));
+    assertEquals(handshake, target);
+    assertTrue(target.supports(Handshake.UNTAGGED_RESULTS));
+
+    // the handshake of an older client ends after the timestamp
+    ByteBuf legacy = transport.serialize(new Handshake(7));
+    ByteBuf truncated = Unpooled.copiedBuffer(legacy.slice(0, legacy.readableBytes() - 1));
+    legacy.release();
+    assertEquals(new Handshake(7), transport.deserialize(truncated));
+  }
+}
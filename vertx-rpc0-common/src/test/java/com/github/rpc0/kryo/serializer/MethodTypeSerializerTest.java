@@ -11,10 +11,18 @@ import java.io.ByteArrayOutputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class MethodTypeSerializerTest {
 
-  private final Kryo kryo = new KryoFactory().get();
+  private final KryoFactory kryoFactory = new KryoFactory();
+  private final Kryo kryo = kryoFactory.get();
 
 
   @SneakyThrows
@@ -41,4 +49,51 @@ public class MethodTypeSerializerTest {
     MethodHandle m2 = superMethod.bindTo("World");
     System.out.println(m2.invoke(2));
   }
-}
\ No newline at end of file
+
+  @SneakyThrows
+  private byte[] write(Kryo kryo, MethodType methodType) {
+    try (Output output = new Output(64, -1)) {
+      kryo.writeObject(output, methodType);
+      return output.toBytes();
+    }
+  }
+
+  @Test
+  public void roundTrip() {
+    List<MethodType> methodTypes = List.of(
+            MethodType.methodType(Object.class),
+            MethodType.methodType(Double.class, Double.class, double.class),
+            MethodType.methodType(int.class, String.class, long.class, LocalDateTime.class, List.class),
+            MethodType.methodType(Object.class, Collections.nCopies(20, int.class)),
+            MethodType.methodType(Object.class, Collections.nCopies(255, Integer.class))
+    );
+    for (MethodType methodType : methodTypes) {
+      assertEquals(methodType, kryoRoundTrip(methodType));
+      // from the caches
+      assertEquals(methodType, kryoRoundTrip(methodType));
+    }
+  }
+
+  @Test
+  public void cachedAcrossKryo() {
+    MethodType methodType = MethodType.methodType(Double.class, Double.class, double.class);
+    MethodType decoded = kryoRoundTrip(methodType);
+    assertSame(decoded, kryoRoundTrip(methodType));
+
+    Kryo other = kryoFactory.get();
+    assertArrayEquals(write(kryo, methodType), write(other, methodType));
+    assertSame(decoded, other.readObject(new Input(write(other, methodType)), MethodType.class));
+  }
+
+  @Test
+  public void collision() {
+    MethodTypeSerializer serializer = new MethodTypeSerializer(new MethodTypeCache(1));
+    MethodType first = MethodType.methodType(String.class, int.class);
+    MethodType second = MethodType.methodType(String.class, long.class);
+    for (MethodType methodType : List.of(first, second, first)) {
+      Output output = new Output(64, -1);
+      serializer.write(kryo, output, methodType);
+      assertEquals(methodType, serializer.read(kryo, new Input(output.toBytes()), MethodType.class));
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.github.rpc0.kryo.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.kryo.KryoFactory;
+import org.junit.Test;
+
+import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterArraySerializerTest {
+
+  private static final MethodType ADD = MethodType.methodType(Double.class, Double.class, Double.class);
+
+  private final Kryo kryo = new KryoFactory().get();
+
+  private byte[] write(ParameterArray parameters, MethodType methodType) {
+    Output output = new Output(256);
+    ParameterArraySerializer.write(kryo, output, parameters, methodType);
+    return output.toBytes();
+  }
+
+  private ParameterArray read(byte[] bytes, MethodType methodType) {
+    return ParameterArraySerializer.read(kryo, new Input(bytes), methodType);
+  }
+
+  @Test
+  public void untaggedIsSmaller() {
+    ParameterArray parameters = ParameterArray.create(new Object[]{1D, 2D});
+    byte[] untagged = write(parameters, ADD);
+    byte[] tagged = write(parameters, null);
+
+    assertEquals(parameters, read(untagged, ADD));
+    assertEquals(parameters, read(tagged, ADD));
+    // neither the size nor the class of each parameter
+    assertEquals(tagged.length - 3, untagged.length);
+  }
+
+  @Test
+  public void mixedTypes() {
+    MethodType methodType = MethodType.methodType(void.class, int.class, String.class, Object.class, LocalDateTime.class, List.class);
+    ParameterArray parameters = ParameterArray.create(new Object[]{
+            1, "s", LocalDateTime.now(), LocalDateTime.now(), Arrays.asList(1, 2)
+    });
+    byte[] untagged = write(parameters, methodType);
+
+    assertEquals(parameters, read(untagged, methodType));
+    assertTrue(untagged.length < write(parameters, null).length);
+  }
+
+  @Test
+  public void nullFallsBackToTagged() {
+    ParameterArray parameters = ParameterArray.create(new Object[]{1D, null});
+    byte[] bytes = write(parameters, ADD);
+
+    assertEquals(parameters, read(bytes, null));
+    assertEquals(parameters, read(bytes, ADD));
+  }
+
+  @Test
+  public void empty() {
+    MethodType methodType = MethodType.methodType(Double.class);
+    assertEquals(ParameterArray.create(), read(write(ParameterArray.create(), methodType), methodType));
+  }
+
+  @Test(expected = KryoException.class)
+  public void untaggedWithoutMethodType() {
+    read(write(ParameterArray.create(new Object[]{1D, 2D}), ADD), null);
+  }
+}
@@ -0,0 +1,84 @@
+package com.github.rpc0.perf;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.kryo.KryoFactory;
+import com.github.rpc0.transport.KryoMessageTransport;
+import com.github.rpc0.transport.MessageExchange;
+import com.github.rpc0.transport.MessageTransport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the stream adapters (the former transport) with reading and writing the ByteBuf in place,
+ * run with {@code -prof gc} for the allocation profile.
+ * <pre>
+ * Benchmark                                                      Mode  Cnt     Score      Error  Units
+ * MessageTransportBenchmark.inPlaceRoundTrip                     avgt    5  1576.181 ± 1271.450  ns/op
+ * MessageTransportBenchmark.inPlaceRoundTrip:·gc.alloc.rate.norm avgt    5   871.414 ±    0.207   B/op
+ * MessageTransportBenchmark.streamRoundTrip                      avgt    5  3457.882 ± 3896.762  ns/op
+ * MessageTransportBenchmark.streamRoundTrip:·gc.alloc.rate.norm  avgt    5  9070.913 ±    1.088   B/op
+ * </pre>
+ *
+ * @author fishzhao
+ * @since 2022-03-04
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageTransportBenchmark {
+
+  private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+  private final MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+  private final Kryo kryo = new KryoFactory().get();
+  private InvokeSpec invokeSpec;
+
+  @Setup
+  public void setup() {
+    invokeSpec = new InvokeSpec(
+            1L,
+            System.currentTimeMillis(),
+            "com.github.rpc0.service.DoubleService",
+            "add",
+            MethodType.methodType(Double.class, Double.class, Double.class),
+            ParameterArray.create(new Object[]{Math.PI, Math.E})
+    );
+  }
+
+  @Benchmark
+  public MessageExchange streamRoundTrip() throws IOException {
+    ByteBuf byteBuf = allocator.buffer();
+    try {
+      try (Output output = new Output(new ByteBufOutputStream(byteBuf))) {
+        kryo.writeClassAndObject(output, invokeSpec);
+      }
+      try (Input input = new Input(new ByteBufInputStream(byteBuf))) {
+        return (MessageExchange) kryo.readClassAndObject(input);
+      }
+    } finally {
+      byteBuf.release();
+    }
+  }
+
+  @Benchmark
+  public MessageExchange inPlaceRoundTrip() {
+    return transport.deserialize(transport.serialize(allocator, invokeSpec));
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.rpc0.transport;
+
+import com.github.rpc0.invoke.InvokeResult;
+import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.kryo.KryoFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.vertx.core.VertxException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-08
+ */
+public class MarkedLenFrameDecoderTest {
+
+  private final MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+
+  private InvokeResult result(long requestId) {
+    return new InvokeResult(requestId, System.currentTimeMillis(), ResultCode.OK, null, "result-" + requestId);
+  }
+
+  @Test
+  public void testManyFramesPerRead() {
+    EmbeddedChannel channel = new EmbeddedChannel(new MarkedLenFrameDecoder());
+    ByteBuf in = PooledByteBufAllocator.DEFAULT.directBuffer();
+    for (int i = 0; i < 3; ++i) {
+      ByteBuf frame = transport.serializeFrame(PooledByteBufAllocator.DEFAULT, result(i));
+      in.writeBytes(frame);
+      frame.release();
+    }
+    assertTrue(channel.writeInbound(in));
+    for (int i = 0; i < 3; ++i) {
+      ByteBufHolder holder = channel.readInbound();
+      assertEquals(result(i).getRequestId(), ((InvokeResult) transport.deserialize(holder.content())).getRequestId());
+    }
+    assertNull(channel.readInbound());
+    assertFalse(channel.finish());
+    assertEquals(0, in.refCnt());
+  }
+
+  @Test
+  public void testSplitFrame() {
+    EmbeddedChannel channel = new EmbeddedChannel(new MarkedLenFrameDecoder());
+    InvokeResult result = result(1);
+    ByteBuf frame = transport.serializeFrame(PooledByteBufAllocator.DEFAULT, result);
+    int len = frame.readableBytes();
+    assertFalse(channel.writeInbound(frame.readRetainedSlice(3)));
+    assertFalse(channel.writeInbound(frame.readRetainedSlice(len / 2 - 3)));
+    assertTrue(channel.writeInbound(frame.readRetainedSlice(frame.readableBytes())));
+    frame.release();
+    ByteBufHolder holder = channel.readInbound();
+    assertEquals(result, transport.deserialize(holder.content()));
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testMaxMsgLen() {
+    EmbeddedChannel channel = new EmbeddedChannel(new MarkedLenFrameDecoder(4));
+    ByteBuf frame = transport.serializeFrame(PooledByteBufAllocator.DEFAULT, result(1));
+    assertTrue(channel.writeInbound(frame));
+    Object msg = channel.readInbound();
+    assertTrue(msg instanceof VertxException);
+    // nothing is decoded after the corrupted frame
+    ByteBuf next = transport.serializeFrame(PooledByteBufAllocator.DEFAULT, result(2));
+    assertFalse(channel.writeInbound(next));
+    assertEquals(0, next.refCnt());
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testUnknownMagic() {
+    EmbeddedChannel channel = new EmbeddedChannel(new MarkedLenFrameDecoder());
+    assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{1, 2, 0, 0, 0, 0})));
+    Object msg = channel.readInbound();
+    assertTrue(msg instanceof VertxException);
+    assertFalse(channel.finish());
+  }
+}
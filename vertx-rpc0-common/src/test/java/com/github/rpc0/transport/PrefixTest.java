@@ -0,0 +1,44 @@
+package com.github.rpc0.transport;
+
+import com.github.rpc0.invoke.InvokeResult;
+import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.kryo.KryoFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fishzhao
+ * @since 2022-03-05
+ */
+public class PrefixTest {
+
+  private final MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+
+  @Test
+  public void testSerializeFrame() {
+    InvokeResult result = new InvokeResult(1, System.currentTimeMillis(), ResultCode.OK, null, LocalDateTime.now());
+    ByteBuf prepended = Prefix.prependTo(transport.serialize(PooledByteBufAllocator.DEFAULT, result));
+    ByteBuf frame = transport.serializeFrame(PooledByteBufAllocator.DEFAULT, result);
+    try {
+      assertTrue(prepended instanceof CompositeByteBuf);
+      assertFalse(frame instanceof CompositeByteBuf);
+      assertArrayEquals(ByteBufUtil.getBytes(prepended), ByteBufUtil.getBytes(frame));
+
+      assertTrue(Prefix.isMagicMatch(ByteBufUtil.getBytes(frame, 0, 2)));
+      assertEquals(frame.readableBytes() - Prefix.prefixLen(), frame.getInt(2));
+    } finally {
+      prepended.release();
+    }
+    assertEquals(result, transport.deserialize(frame.skipBytes(Prefix.prefixLen())));
+  }
+}
@@ -1,11 +1,13 @@
 package com.github.rpc0.service;
 
+import com.github.rpc0.annotation.Rpc0Service;
 import io.vertx.core.Future;
 
 /**
  * @author fishzhao
  * @since 2021-12-21
  */
+@Rpc0Service
 public interface DoubleService {
 
   Future<Double> add(Double a, Double b);
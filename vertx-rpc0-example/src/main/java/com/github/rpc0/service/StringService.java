@@ -1,6 +1,6 @@
 package com.github.rpc0.service;
 
-
+import com.github.rpc0.annotation.Rpc0Service;
 import io.vertx.core.Future;
 
 import java.util.List;
@@ -10,6 +10,7 @@ import java.util.Map;
  * @author fishzhao
  * @since 2021-12-24
  */
+@Rpc0Service
 public interface StringService {
 
 
@@ -1,5 +1,6 @@
 package com.github.rpc0.service;
 
+import com.github.rpc0.annotation.Rpc0Service;
 import io.vertx.core.Future;
 
 import java.time.LocalDateTime;
@@ -8,6 +9,7 @@ import java.time.LocalDateTime;
  * @author fishzhao
  * @since 2022-01-14
  */
+@Rpc0Service
 public interface TimeService {
 
   Future<LocalDateTime> timeAfterNDays(LocalDateTime from, int nDays);
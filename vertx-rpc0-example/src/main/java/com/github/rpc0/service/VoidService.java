@@ -1,6 +1,7 @@
 package com.github.rpc0.service;
 
 
+import com.github.rpc0.annotation.OneWay;
 import io.vertx.core.Future;
 
 /**
@@ -10,4 +11,7 @@ import io.vertx.core.Future;
 public interface VoidService {
 
   Future<Void> run();
+
+  @OneWay
+  Future<Void> signal();
 }
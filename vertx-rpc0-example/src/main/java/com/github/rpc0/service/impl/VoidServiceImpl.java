@@ -1,11 +1,14 @@
 package com.github.rpc0.service.impl;
 
+import com.github.rpc0.server.Cancellation;
 import com.github.rpc0.service.VoidService;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import lombok.RequiredArgsConstructor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author fishzhao
  * @since 2022-01-14
@@ -13,12 +16,40 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class VoidServiceImpl implements VoidService {
 
+  private final AtomicInteger runs = new AtomicInteger(0);
+  private final AtomicInteger cancelledRuns = new AtomicInteger(0);
+  private final AtomicInteger signals = new AtomicInteger(0);
   private final Vertx vertx;
 
   @Override
   public Future<Void> run() {
+    runs.incrementAndGet();
     Promise<Void> promise = Promise.promise();
-    vertx.setTimer(200, timerId -> promise.complete());
+    long timerId = vertx.setTimer(200, id -> promise.complete());
+    // the timer is not waited for if the client gives up the call
+    Cancellation.onCancel(() -> {
+      if (vertx.cancelTimer(timerId)) {
+        cancelledRuns.incrementAndGet();
+      }
+    });
     return promise.future();
   }
+
+  @Override
+  public Future<Void> signal() {
+    signals.incrementAndGet();
+    return Future.succeededFuture();
+  }
+
+  public int runs() {
+    return runs.get();
+  }
+
+  public int cancelledRuns() {
+    return cancelledRuns.get();
+  }
+
+  public int signals() {
+    return signals.get();
+  }
 }
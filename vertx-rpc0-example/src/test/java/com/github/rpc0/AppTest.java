@@ -4,6 +4,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.rpc0.client.ServiceFactory;
 import com.github.rpc0.client.ServiceFactoryBuilder;
+import com.github.rpc0.client.ServiceStub;
+import com.github.rpc0.invoke.Handshake;
+import com.github.rpc0.invoke.InvokeResult;
+import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.kryo.KryoFactory;
 import com.github.rpc0.model.User;
 import com.github.rpc0.server.Rpc0Server;
 import com.github.rpc0.server.Rpc0ServerBuilder;
@@ -17,10 +24,16 @@ import com.github.rpc0.service.impl.DoubleServiceImpl;
 import com.github.rpc0.service.impl.StringServiceImpl;
 import com.github.rpc0.service.impl.TimeServiceImpl;
 import com.github.rpc0.service.impl.VoidServiceImpl;
+import com.github.rpc0.transport.KryoMessageTransport;
+import com.github.rpc0.transport.MarkedLenMessageHandler;
+import com.github.rpc0.transport.MessageTransport;
+import com.github.rpc0.transport.ParserHandler;
 import com.github.rpc0.util.ObjectMapperSupplier;
 import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBufAllocator;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetClientOptions;
 import io.vertx.core.net.NetServerOptions;
 import io.vertx.core.net.SelfSignedCertificate;
@@ -35,11 +48,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Proxy;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @RunWith(VertxUnitRunner.class)
@@ -51,12 +67,15 @@ public class AppTest {
 
     @Rule
     public RunTestOnContext rule = new RunTestOnContext();
+    private SelfSignedCertificate certificate;
+    private VoidServiceImpl voidService;
 
     @Before
     public void before(TestContext context) {
         Vertx vertx = rule.vertx();
-        SelfSignedCertificate certificate = SelfSignedCertificate.create();
-        Rpc0Server rpc0Server = new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9999).setSsl(true).setTrustOptions(certificate.trustOptions()).setKeyCertOptions(certificate.keyCertOptions())).addBinding(StringService.class, new StringServiceImpl()).addBinding(DoubleService.class, new DoubleServiceImpl()).addBinding(TimeService.class, new TimeServiceImpl()).addBinding(VoidService.class, new VoidServiceImpl(vertx)).addBinding(BeanService.class, new BeanServiceImpl(objectMapper)).registerTypes("com.github.rpc0.model", false).build();
+        certificate = SelfSignedCertificate.create();
+        voidService = new VoidServiceImpl(vertx);
+        Rpc0Server rpc0Server = new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9999).setSsl(true).setTrustOptions(certificate.trustOptions()).setKeyCertOptions(certificate.keyCertOptions())).addBinding(StringService.class, new StringServiceImpl()).addBinding(DoubleService.class, new DoubleServiceImpl()).addBinding(TimeService.class, new TimeServiceImpl()).addBinding(VoidService.class, voidService).addBinding(BeanService.class, new BeanServiceImpl(objectMapper)).registerTypes("com.github.rpc0.model", false).build();
         Promise<Void> promise = Promise.promise();
         vertx.deployVerticle(rpc0Server).onSuccess(deploymentId -> {
             ServiceFactory factory = new ServiceFactoryBuilder(vertx, "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).registerService(StringService.class).registerService(TimeService.class).registerService(VoidService.class).registerService(BeanService.class).registerTypes("com.github.rpc0.model", false).build();
@@ -89,6 +108,179 @@ public class AppTest {
         });
     }
 
+    @Test
+    public void testMethodIdNegotiation(TestContext context) {
+        Async async = context.async(2);
+        ServiceFactory factory = new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).setMethodIdNegotiation(true).build();
+        DoubleService doubleService = factory.create(DoubleService.class);
+        // the method table arrives before the first result, so the next calls are sent by method id
+        doubleService.add(1D, 8D).onComplete(result -> {
+            context.assertTrue(result.succeeded());
+            doubleService.mul(3D, 4D).onComplete(result1 -> {
+                context.assertTrue(result1.succeeded());
+                context.assertEquals(12D, result1.result());
+                async.countDown();
+            });
+            doubleService.add(new Double[]{1D, 2D, 3D}).onComplete(result1 -> {
+                context.assertTrue(result1.succeeded());
+                context.assertEquals(6D, result1.result());
+                async.countDown();
+            });
+        });
+    }
+
+    @Test
+    public void testNativeFrameDecoder(TestContext context) {
+        int calls = 64;
+        Async async = context.async(calls);
+        Vertx vertx = rule.vertx();
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9997)).addBinding(DoubleService.class, new DoubleServiceImpl()).setNativeFrameDecoder(true).deploy(1).onComplete(context.asyncAssertSuccess(deploymentId -> {
+            ServiceFactory factory = new ServiceFactoryBuilder(vertx, "127.0.0.1", 9997, new NetClientOptions(), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).setNativeFrameDecoder(true).build();
+            DoubleService doubleService = factory.create(DoubleService.class);
+            // pipelined calls, so one read of either side carries many frames
+            for (int i = 0; i < calls; ++i) {
+                double n = i;
+                doubleService.add(n, 1D).onComplete(result -> {
+                    context.assertTrue(result.succeeded());
+                    context.assertEquals(n + 1D, result.result());
+                    async.countDown();
+                });
+            }
+        }));
+    }
+
+    @Test
+    public void testMultipleInstances(TestContext context) {
+        int calls = 64;
+        Async async = context.async(calls);
+        Vertx vertx = rule.vertx();
+        // the connections of the pool are spread over the instances
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9996)).addBinding(DoubleService.class, new DoubleServiceImpl()).setNativeFrameDecoder(true).deploy(2).onComplete(context.asyncAssertSuccess(deploymentId -> {
+            ServiceFactory factory = new ServiceFactoryBuilder(vertx, "127.0.0.1", 9996, new NetClientOptions(), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).setPoolSize(4).build();
+            DoubleService doubleService = factory.create(DoubleService.class);
+            for (int i = 0; i < calls; ++i) {
+                double n = i;
+                doubleService.mul(n, 2D).onComplete(result -> {
+                    context.assertTrue(result.succeeded());
+                    context.assertEquals(n * 2D, result.result());
+                    async.countDown();
+                });
+            }
+        }));
+    }
+
+    @Test
+    public void testConnectionPool(TestContext context) {
+        int calls = 64;
+        Async async = context.async(calls);
+        ServiceFactory factory = new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).setPoolSize(4).build();
+        DoubleService doubleService = factory.create(DoubleService.class);
+        for (int i = 0; i < calls; ++i) {
+            double n = i;
+            doubleService.mul(n, 2D).onComplete(result -> {
+                context.assertTrue(result.succeeded());
+                context.assertEquals(n * 2D, result.result());
+                async.countDown();
+            });
+        }
+    }
+
+    @Test
+    public void testEventLoopAffinity(TestContext context) {
+        int calls = 16;
+        Async async = context.async(calls + 1);
+        ServiceFactory factory = new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).setEventLoopAffinity(true).build();
+        DoubleService doubleService = factory.create(DoubleService.class);
+        // the results of the calls on an event loop complete on that loop
+        Thread caller = Thread.currentThread();
+        for (int i = 0; i < calls; ++i) {
+            double n = i;
+            doubleService.add(n, 1D).onComplete(result -> {
+                context.assertTrue(result.succeeded());
+                context.assertEquals(n + 1D, result.result());
+                context.assertEquals(caller, Thread.currentThread());
+                async.countDown();
+            });
+        }
+        // not on an event loop, goes round-robin
+        new Thread(() -> doubleService.mul(3D, 4D).onComplete(result -> {
+            context.assertTrue(result.succeeded());
+            context.assertEquals(12D, result.result());
+            async.countDown();
+        })).start();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEventLoopAffinityWithPoolSize() {
+        // the event loops size the connections
+        new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999).registerService(DoubleService.class).setPoolSize(2).setEventLoopAffinity(true).build();
+    }
+
+    @Test
+    public void testAdmissionControl(TestContext context) {
+        int calls = 64;
+        Async async = context.async(calls);
+        Vertx vertx = rule.vertx();
+        // reading pauses at every other request, and whenever a response is queued
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9998)).addBinding(DoubleService.class, new DoubleServiceImpl()).setInFlightLimits(2, 4).setWriteQueueLimits(16, 64).deploy(1).onComplete(context.asyncAssertSuccess(deploymentId -> {
+            ServiceFactory factory = new ServiceFactoryBuilder(vertx, "127.0.0.1", 9998, new NetClientOptions(), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(DoubleService.class).build();
+            DoubleService doubleService = factory.create(DoubleService.class);
+            for (int i = 0; i < calls; ++i) {
+                double n = i;
+                doubleService.add(n, 1D).onComplete(result -> {
+                    context.assertTrue(result.succeeded());
+                    context.assertEquals(n + 1D, result.result());
+                    async.countDown();
+                });
+            }
+        }));
+    }
+
+    @Test
+    public void testAdmissionControlPausesReading(TestContext context) {
+        assertReadingPaused(context, 9995, false);
+    }
+
+    @Test
+    public void testAdmissionControlPausesNativeFrameDecoder(TestContext context) {
+        assertReadingPaused(context, 9994, true);
+    }
+
+    // run() holds each of the 2 requests allowed in flight for 200ms
+    private void assertReadingPaused(TestContext context, int port, boolean nativeFrameDecoder) {
+        Async async = context.async(4);
+        Vertx vertx = rule.vertx();
+        VoidServiceImpl service = new VoidServiceImpl(vertx);
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(port)).addBinding(VoidService.class, service).setInFlightLimits(2, 1024).setNativeFrameDecoder(nativeFrameDecoder).deploy(1).onComplete(context.asyncAssertSuccess(deploymentId -> {
+            ServiceFactory factory = new ServiceFactoryBuilder(vertx, "127.0.0.1", port, new NetClientOptions(), Duration.ofSeconds(3), Vertx.class.getClassLoader()).registerService(VoidService.class).build();
+            VoidService runner = factory.create(VoidService.class);
+            // connected first
+            runner.run().onComplete(context.asyncAssertSuccess(v -> {
+                for (int i = 0; i < 2; ++i) {
+                    runner.run().onComplete(context.asyncAssertSuccess(v1 -> async.countDown()));
+                }
+                // not read until one of the two completes
+                vertx.setTimer(50, timerId -> runner.run().onComplete(context.asyncAssertSuccess(v1 -> {
+                    context.assertEquals(4, service.runs());
+                    async.countDown();
+                })));
+                vertx.setTimer(150, timerId -> {
+                    context.assertEquals(3, service.runs());
+                    async.countDown();
+                });
+            }));
+        }));
+    }
+
+    @Test
+    public void testGeneratedStub(TestContext context) {
+        ServiceFactory factory = context.get(FACTORY_KEY);
+        // annotated with @Rpc0Service
+        context.assertTrue(factory.create(DoubleService.class) instanceof ServiceStub);
+        context.assertTrue(factory.create(StringService.class) instanceof ServiceStub);
+        context.assertTrue(Proxy.isProxyClass(factory.create(BeanService.class).getClass()));
+    }
+
     @Test
     public void testStringService(TestContext context) {
         Async async = context.async(4);
@@ -153,6 +345,141 @@ public class AppTest {
         });
     }
 
+    @Test
+    public void testTimeout(TestContext context) {
+        Async async = context.async(3);
+        ServiceFactory factory = new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofMillis(50), Vertx.class.getClassLoader()).registerService(VoidService.class).registerService(DoubleService.class).setMethodIdNegotiation(true).build();
+        DoubleService doubleService = factory.create(DoubleService.class);
+        // connected and handshaken first whatever the result, so run() reaches the server before its deadline
+        doubleService.add(1D, 2D).onComplete(result -> {
+            // run() completes after 200ms, the connection keeps serving after the expiry
+            factory.create(VoidService.class).run().onComplete(result1 -> {
+                context.assertTrue(result1.failed());
+                context.assertEquals("Timeout", result1.cause().getMessage());
+                // cancelled on the server as well
+                rule.vertx().setTimer(100, timerId -> {
+                    context.assertEquals(1, voidService.cancelledRuns());
+                    async.countDown();
+                });
+                doubleService.add(1D, 2D).onComplete(result2 -> {
+                    context.assertTrue(result2.succeeded());
+                    context.assertEquals(3D, result2.result());
+                    async.countDown();
+                });
+            });
+            async.countDown();
+        });
+    }
+
+    @Test
+    public void testOneWay(TestContext context) throws NoSuchMethodException {
+        int signals = 16;
+        Async async = context.async(signals + 2);
+        ServiceFactory factory = new ServiceFactoryBuilder(rule.vertx(), "127.0.0.1", 9999, new NetClientOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()).setTrustOptions(certificate.trustOptions()), Duration.ofMillis(50), Vertx.class.getClassLoader()).registerService(VoidService.class).registerService(DoubleService.class).registerOneWay(VoidService.class.getMethod("run")).setMethodIdNegotiation(true).build();
+        DoubleService doubleService = factory.create(DoubleService.class);
+        VoidService oneWayService = factory.create(VoidService.class);
+        // one-way once the server announced it by the handshake
+        doubleService.add(1D, 2D).onComplete(context.asyncAssertSuccess(sum -> {
+            // completed once flushed, run() would time out awaiting its result
+            oneWayService.run().onComplete(result -> {
+                context.assertTrue(result.succeeded());
+                async.countDown();
+            });
+            for (int i = 0; i < signals; ++i) {
+                oneWayService.signal().onComplete(result -> {
+                    context.assertTrue(result.succeeded());
+                    async.countDown();
+                });
+            }
+            // invoked on the server, without any result read by the connection
+            rule.vertx().setTimer(300, timerId -> doubleService.add(1D, 2D).onComplete(result -> {
+                context.assertTrue(result.succeeded());
+                context.assertEquals(3D, result.result());
+                context.assertEquals(signals, voidService.signals());
+                context.assertEquals(0, voidService.cancelledRuns());
+                async.countDown();
+            }));
+        }));
+    }
+
+    @Test
+    public void testOneWayWithoutHandshake(TestContext context) {
+        int signals = 16;
+        Async async = context.async(signals);
+        ServiceFactory factory = context.get(FACTORY_KEY);
+        VoidService oneWayService = factory.create(VoidService.class);
+        AtomicInteger answered = new AtomicInteger(0);
+        // not announced by the server, answered like any call, so none is lost
+        for (int i = 0; i < signals; ++i) {
+            oneWayService.signal().onComplete(result -> {
+                context.assertTrue(result.succeeded());
+                context.assertTrue(voidService.signals() >= answered.incrementAndGet());
+                async.countDown();
+            });
+        }
+    }
+
+    @Test
+    public void testDuplicatedRequestId(TestContext context) {
+        Async async = context.async(2);
+        Vertx vertx = rule.vertx();
+        MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9993)).addBinding(VoidService.class, new VoidServiceImpl(vertx)).deploy(1).onComplete(context.asyncAssertSuccess(deploymentId -> vertx.createNetClient().connect(9993, "127.0.0.1", context.asyncAssertSuccess(socket -> {
+            AtomicInteger results = new AtomicInteger(0);
+            socket.handler(new MarkedLenMessageHandler(new ParserHandler() {
+                @Override
+                public void handle(Buffer buffer) {
+                    InvokeResult result = (InvokeResult) transport.deserialize(buffer.getByteBuf());
+                    context.assertEquals(1L, result.getRequestId());
+                    // the duplicate is rejected at once, the original still answered after 200ms
+                    context.assertEquals(results.getAndIncrement() == 0 ? ResultCode.PARAMETER_ERROR : ResultCode.OK, result.getCode());
+                    async.countDown();
+                }
+
+                @Override
+                public void fetal(Throwable cause) {
+                    context.fail(cause);
+                }
+            }));
+            InvokeSpec invokeSpec = new InvokeSpec(1L, System.currentTimeMillis(), VoidService.class.getTypeName(), "run", MethodType.methodType(Void.class), ParameterArray.create());
+            socket.write(Buffer.buffer(transport.serializeFrame(ByteBufAllocator.DEFAULT, invokeSpec)));
+            socket.write(Buffer.buffer(transport.serializeFrame(ByteBufAllocator.DEFAULT, invokeSpec)));
+        }))));
+    }
+
+    @Test
+    public void testDeadlineExceededWhilePaused(TestContext context) {
+        Async async = context.async(2);
+        Vertx vertx = rule.vertx();
+        VoidServiceImpl service = new VoidServiceImpl(vertx);
+        MessageTransport transport = new KryoMessageTransport(new KryoFactory());
+        // the first run() pauses reading for 200ms, the second one read along waits past its deadline
+        new Rpc0ServerBuilder(vertx, new NetServerOptions().setHost("127.0.0.1").setPort(9992)).addBinding(VoidService.class, service).setInFlightLimits(1, 1024).deploy(1).onComplete(context.asyncAssertSuccess(deploymentId -> vertx.createNetClient().connect(9992, "127.0.0.1", context.asyncAssertSuccess(socket -> {
+            socket.handler(new MarkedLenMessageHandler(new ParserHandler() {
+                @Override
+                public void handle(Buffer buffer) {
+                    InvokeResult result = (InvokeResult) transport.deserialize(buffer.getByteBuf());
+                    context.assertEquals(result.getRequestId() == 1L ? ResultCode.OK : ResultCode.DEADLINE_EXCEEDED, result.getCode());
+                    context.assertEquals(1, service.runs());
+                    async.countDown();
+                }
+
+                @Override
+                public void fetal(Throwable cause) {
+                    context.fail(cause);
+                }
+            }));
+            long timestamp = System.currentTimeMillis();
+            Buffer requests = Buffer.buffer();
+            for (long requestId = 1L; requestId <= 2L; ++requestId) {
+                InvokeSpec invokeSpec = new InvokeSpec(requestId, timestamp, timestamp + 100L, VoidService.class.getTypeName(), "run", MethodType.methodType(Void.class), InvokeSpec.NO_METHOD_ID, ParameterArray.create());
+                requests.appendBuffer(Buffer.buffer(transport.serializeFrame(ByteBufAllocator.DEFAULT, invokeSpec, Handshake.DEADLINES)));
+            }
+            // written at once, so both are read before reading pauses
+            socket.write(requests);
+        }))));
+    }
+
     @Test
     public void testBeanService(TestContext context) {
         Async async = context.async();
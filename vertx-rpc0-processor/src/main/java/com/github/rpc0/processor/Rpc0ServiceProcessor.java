@@ -0,0 +1,70 @@
+package com.github.rpc0.processor;
+
+import com.github.rpc0.annotation.Rpc0Service;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Generates the client stub and the server skeleton of every interface annotated with {@link Rpc0Service},
+ * each only if the client or server module is on the classpath,
+ * an interface it can not handle is left to the reflective proxy and method handles with a warning.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+public final class Rpc0ServiceProcessor extends AbstractProcessor {
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(Rpc0Service.class.getCanonicalName());
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(Rpc0Service.class)) {
+      if (element.getKind() != ElementKind.INTERFACE) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "@Rpc0Service is only applicable to interfaces", element);
+        continue;
+      }
+      TypeElement type = (TypeElement) element;
+      if (!type.getTypeParameters().isEmpty() || type.getModifiers().contains(Modifier.PRIVATE)) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "No stub or skeleton is generated for a generic or private interface", element);
+        continue;
+      }
+      ServiceModel model = new ServiceModel(processingEnv, type);
+      try {
+        if (isAvailable(StubWriter.SERVICE_STUB)) {
+          new StubWriter(processingEnv, model).write();
+        }
+        if (isAvailable(SkeletonWriter.SERVICE_SKELETON)) {
+          new SkeletonWriter(processingEnv, model).write();
+        }
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Failed to generate the stub or skeleton: " + e, element);
+      }
+    }
+    return false;
+  }
+
+  private boolean isAvailable(String typeName) {
+    return processingEnv.getElementUtils().getTypeElement(typeName) != null;
+  }
+}
@@ -0,0 +1,187 @@
+package com.github.rpc0.processor;
+
+import com.github.rpc0.annotation.GeneratedNames;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The methods of a service interface as seen from the interface, rendered to source code.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+final class ServiceModel {
+
+  private static final String FUTURE = "io.vertx.core.Future";
+
+  private final Types types;
+  private final TypeElement type;
+  private final String packageName;
+  private final String binaryName;
+  private final List<MethodModel> methods;
+
+  ServiceModel(ProcessingEnvironment processingEnv, TypeElement type) {
+    Elements elements = processingEnv.getElementUtils();
+    this.types = processingEnv.getTypeUtils();
+    this.type = type;
+    this.packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    this.binaryName = elements.getBinaryName(type).toString();
+    TypeMirror future = types.erasure(elements.getTypeElement(FUTURE).asType());
+    List<MethodModel> methods = new ArrayList<>();
+    for (Element member : elements.getAllMembers(type)) {
+      if (member.getKind() != ElementKind.METHOD
+          || member.getModifiers().contains(Modifier.STATIC)
+          || member.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+        continue;
+      }
+      ExecutableElement method = (ExecutableElement) member;
+      ExecutableType methodType = (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+      boolean remote = types.isSameType(types.erasure(methodType.getReturnType()), future);
+      methods.add(new MethodModel(method, methodType, remote));
+    }
+    this.methods = Collections.unmodifiableList(methods);
+  }
+
+  TypeElement getType() {
+    return type;
+  }
+
+  String getPackageName() {
+    return packageName;
+  }
+
+  String getBinaryName() {
+    return binaryName;
+  }
+
+  String getQualifiedName() {
+    return type.getQualifiedName().toString();
+  }
+
+  List<MethodModel> getMethods() {
+    return methods;
+  }
+
+  /**
+   * Simple name of a generated top-level class in the package of the service.
+   */
+  String simpleNameOf(String generatedName) {
+    return packageName.isEmpty() ? generatedName : generatedName.substring(packageName.length() + 1);
+  }
+
+  String stubName() {
+    return GeneratedNames.stubName(binaryName);
+  }
+
+  final class MethodModel {
+
+    private final ExecutableElement method;
+    private final ExecutableType methodType;
+    private final boolean remote;
+
+    private MethodModel(ExecutableElement method, ExecutableType methodType, boolean remote) {
+      this.method = method;
+      this.methodType = methodType;
+      this.remote = remote;
+    }
+
+    /**
+     * Returns {@code Future}, to be called remotely.
+     */
+    boolean isRemote() {
+      return remote;
+    }
+
+    boolean isDefault() {
+      return method.isDefault();
+    }
+
+    String getName() {
+      return method.getSimpleName().toString();
+    }
+
+    int parameterCount() {
+      return method.getParameters().size();
+    }
+
+    String parameterName(int i) {
+      return method.getParameters().get(i).getSimpleName().toString();
+    }
+
+    TypeMirror parameterType(int i) {
+      return methodType.getParameterTypes().get(i);
+    }
+
+    /**
+     * Declaration as in the interface, e.g. {@code public <T> Future<T> echo(T t) throws Exception}.
+     */
+    String declaration() {
+      StringBuilder sb = new StringBuilder("public ");
+      List<? extends TypeParameterElement> typeParameters = method.getTypeParameters();
+      if (!typeParameters.isEmpty()) {
+        sb.append(typeParameters.stream().map(ServiceModel::typeParameter)
+                .collect(Collectors.joining(", ", "<", "> ")));
+      }
+      sb.append(methodType.getReturnType()).append(' ').append(getName()).append('(');
+      List<? extends VariableElement> parameters = method.getParameters();
+      for (int i = 0; i < parameters.size(); ++i) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        TypeMirror parameterType = parameterType(i);
+        if (method.isVarArgs() && i == parameters.size() - 1 && parameterType.getKind() == TypeKind.ARRAY) {
+          sb.append(((ArrayType) parameterType).getComponentType()).append("...");
+        } else {
+          sb.append(parameterType);
+        }
+        sb.append(' ').append(parameterName(i));
+      }
+      sb.append(')');
+      List<? extends TypeMirror> thrownTypes = methodType.getThrownTypes();
+      if (!thrownTypes.isEmpty()) {
+        sb.append(thrownTypes.stream().map(TypeMirror::toString)
+                .collect(Collectors.joining(", ", " throws ", "")));
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Erased parameter types as class literals, e.g. {@code java.lang.String.class, int.class}.
+     */
+    String parameterClasses() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < parameterCount(); ++i) {
+        sb.append(", ").append(types.erasure(parameterType(i))).append(".class");
+      }
+      return sb.toString();
+    }
+  }
+
+  private static String typeParameter(TypeParameterElement typeParameter) {
+    List<String> bounds = typeParameter.getBounds().stream()
+            .map(TypeMirror::toString)
+            .filter(bound -> !bound.equals("java.lang.Object"))
+            .collect(Collectors.toList());
+    return bounds.isEmpty()
+            ? typeParameter.getSimpleName().toString()
+            : typeParameter.getSimpleName() + " extends " + String.join(" & ", bounds);
+  }
+}
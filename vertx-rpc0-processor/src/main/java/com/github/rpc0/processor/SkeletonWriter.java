@@ -0,0 +1,93 @@
+package com.github.rpc0.processor;
+
+import com.github.rpc0.annotation.GeneratedNames;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes the server skeleton of a service, which extends {@code com.github.rpc0.server.ServiceSkeleton}.
+ * Every remote method is a case of a switch, calling the service with arguments cast to their erased types.
+ *
+ * @author fishzhao
+ * @since 2022-03-16
+ */
+final class SkeletonWriter {
+
+  static final String SERVICE_SKELETON = "com.github.rpc0.server.ServiceSkeleton";
+  private static final String PARAMETER_ARRAY = "com.github.rpc0.invoke.ParameterArray";
+
+  private final ProcessingEnvironment processingEnv;
+  private final ServiceModel model;
+
+  SkeletonWriter(ProcessingEnvironment processingEnv, ServiceModel model) {
+    this.processingEnv = processingEnv;
+    this.model = model;
+  }
+
+  void write() throws IOException {
+    String skeletonName = GeneratedNames.skeletonName(model.getBinaryName());
+    String simpleName = model.simpleNameOf(skeletonName);
+    JavaFileObject file = processingEnv.getFiler().createSourceFile(skeletonName, model.getType());
+    try (PrintWriter out = new PrintWriter(file.openWriter())) {
+      if (!model.getPackageName().isEmpty()) {
+        out.printf("package %s;%n%n", model.getPackageName());
+      }
+      out.printf("@javax.annotation.processing.Generated(\"%s\")%n", Rpc0ServiceProcessor.class.getName());
+      out.printf("public final class %s extends %s {%n%n", simpleName, SERVICE_SKELETON);
+      out.printf("  private static final java.lang.reflect.Method[] METHODS = {%n");
+      for (ServiceModel.MethodModel method : model.getMethods()) {
+        if (method.isRemote()) {
+          out.printf("          method(%s.class, \"%s\"%s),%n",
+                  model.getQualifiedName(), method.getName(), method.parameterClasses());
+        }
+      }
+      out.printf("  };%n%n");
+      out.printf("  private final %s service;%n%n", model.getQualifiedName());
+      out.printf("  public %s(%s service) {%n", simpleName, model.getQualifiedName());
+      out.printf("    super(METHODS);%n");
+      out.printf("    this.service = java.util.Objects.requireNonNull(service, \"service\");%n");
+      out.printf("  }%n%n");
+      writeInvoke(out);
+      out.printf("}%n");
+    }
+  }
+
+  private void writeInvoke(PrintWriter out) {
+    out.printf("  @Override%n");
+    out.printf("  @SuppressWarnings({\"unchecked\", \"rawtypes\"})%n");
+    out.printf("  public io.vertx.core.Future<?> invoke(int index, %s parameters) throws Throwable {%n", PARAMETER_ARRAY);
+    out.printf("    switch (index) {%n");
+    int index = 0;
+    for (ServiceModel.MethodModel method : model.getMethods()) {
+      if (!method.isRemote()) {
+        continue;
+      }
+      StringBuilder arguments = new StringBuilder();
+      for (int i = 0; i < method.parameterCount(); ++i) {
+        if (i > 0) {
+          arguments.append(", ");
+        }
+        arguments.append('(').append(castType(method.parameterType(i))).append(") parameters.get(").append(i).append(')');
+      }
+      out.printf("      case %d:%n", index++);
+      out.printf("        return service.%s(%s);%n", method.getName(), arguments);
+    }
+    out.printf("      default:%n");
+    out.printf("        throw new java.lang.IndexOutOfBoundsException(\"No method of index: \" + index);%n");
+    out.printf("    }%n");
+    out.printf("  }%n");
+  }
+
+  // primitives are unboxed from their wrappers
+  private String castType(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+    }
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+}
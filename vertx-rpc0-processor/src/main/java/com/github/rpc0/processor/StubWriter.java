@@ -0,0 +1,94 @@
+package com.github.rpc0.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Writes the client stub of a service, which extends {@code com.github.rpc0.client.ServiceStub}.
+ * A remote method wraps its arguments into a {@code ParameterArray} as they are, an abstract local method throws.
+ *
+ * @author fishzhao
+ * @since 2022-03-14
+ */
+final class StubWriter {
+
+  static final String SERVICE_STUB = "com.github.rpc0.client.ServiceStub";
+  private static final String SERVICE_FACTORY = "com.github.rpc0.client.ServiceFactory";
+  private static final String PARAMETER_ARRAY = "com.github.rpc0.invoke.ParameterArray";
+
+  private final ProcessingEnvironment processingEnv;
+  private final ServiceModel model;
+
+  StubWriter(ProcessingEnvironment processingEnv, ServiceModel model) {
+    this.processingEnv = processingEnv;
+    this.model = model;
+  }
+
+  void write() throws IOException {
+    String stubName = model.stubName();
+    String simpleName = model.simpleNameOf(stubName);
+    JavaFileObject file = processingEnv.getFiler().createSourceFile(stubName, model.getType());
+    try (PrintWriter out = new PrintWriter(file.openWriter())) {
+      if (!model.getPackageName().isEmpty()) {
+        out.printf("package %s;%n%n", model.getPackageName());
+      }
+      out.printf("@javax.annotation.processing.Generated(\"%s\")%n", Rpc0ServiceProcessor.class.getName());
+      out.printf("public final class %s extends %s implements %s {%n%n",
+              simpleName, SERVICE_STUB, model.getQualifiedName());
+      writeMethodTable(out);
+      out.printf("  public %s(%s factory) {%n", simpleName, SERVICE_FACTORY);
+      out.printf("    super(factory, METHODS);%n");
+      out.printf("  }%n");
+      int index = 0;
+      for (ServiceModel.MethodModel method : model.getMethods()) {
+        if (method.isRemote()) {
+          writeRemoteMethod(out, method, index++);
+        } else if (!method.isDefault()) {
+          writeLocalMethod(out, method);
+        }
+      }
+      out.printf("}%n");
+    }
+  }
+
+  private void writeMethodTable(PrintWriter out) {
+    out.printf("  private static final java.lang.reflect.Method[] METHODS = {%n");
+    List<ServiceModel.MethodModel> methods = model.getMethods();
+    for (ServiceModel.MethodModel method : methods) {
+      if (method.isRemote()) {
+        out.printf("          method(%s.class, \"%s\"%s),%n",
+                model.getQualifiedName(), method.getName(), method.parameterClasses());
+      }
+    }
+    out.printf("  };%n%n");
+  }
+
+  private void writeRemoteMethod(PrintWriter out, ServiceModel.MethodModel method, int index) {
+    out.printf("%n  @Override%n");
+    out.printf("  %s {%n", method.declaration());
+    if (method.parameterCount() == 0) {
+      out.printf("    return call(%d, %s.create());%n", index, PARAMETER_ARRAY);
+    } else {
+      StringBuilder arguments = new StringBuilder();
+      for (int i = 0; i < method.parameterCount(); ++i) {
+        if (i > 0) {
+          arguments.append(", ");
+        }
+        arguments.append(method.parameterName(i));
+      }
+      out.printf("    return call(%d, %s.wrap(new java.lang.Object[]{%s}));%n", index, PARAMETER_ARRAY, arguments);
+    }
+    out.printf("  }%n");
+  }
+
+  private void writeLocalMethod(PrintWriter out, ServiceModel.MethodModel method) {
+    out.printf("%n  @Override%n");
+    out.printf("  %s {%n", method.declaration());
+    out.printf("    throw new java.lang.UnsupportedOperationException(\"The return raw type of method \\\"%s\\\" must be : io.vertx.core.Future\");%n",
+            method.getName());
+    out.printf("  }%n");
+  }
+}
@@ -0,0 +1,104 @@
+package com.github.rpc0.server;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of the requests in flight and the bytes of the responses queued for writing, of each connection
+ * and of all the connections of a server. A connection reaching a limit pauses reading its socket,
+ * and resumes once under the low-water marks, half of the limits.
+ * <p>
+ * Shared by the verticle instances of a server, the connections keep their own counts.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+final class AdmissionControl {
+
+  private final int maxInFlightPerConnection;
+  private final int maxInFlight;
+  private final int maxQueuedBytesPerConnection;
+  private final long maxQueuedBytes;
+  private final AtomicInteger inFlight = new AtomicInteger(0);
+  private final AtomicLong queuedBytes = new AtomicLong(0L);
+  // the connections paused by the limits of the server, waiting for it to be relieved
+  private final Queue<Runnable> awaiting = new ConcurrentLinkedQueue<>();
+
+  AdmissionControl(int maxInFlightPerConnection,
+                   int maxInFlight,
+                   int maxQueuedBytesPerConnection,
+                   long maxQueuedBytes) {
+    Preconditions.checkArgument(maxInFlightPerConnection > 0,
+            "Illegal maxInFlightPerConnection: %s", maxInFlightPerConnection);
+    Preconditions.checkArgument(maxInFlight > 0, "Illegal maxInFlight: %s", maxInFlight);
+    Preconditions.checkArgument(maxQueuedBytesPerConnection > 0,
+            "Illegal maxQueuedBytesPerConnection: %s", maxQueuedBytesPerConnection);
+    Preconditions.checkArgument(maxQueuedBytes > 0, "Illegal maxQueuedBytes: %s", maxQueuedBytes);
+    this.maxInFlightPerConnection = maxInFlightPerConnection;
+    this.maxInFlight = maxInFlight;
+    this.maxQueuedBytesPerConnection = maxQueuedBytesPerConnection;
+    this.maxQueuedBytes = maxQueuedBytes;
+  }
+
+  boolean isOverloaded(int inFlightOfConnection) {
+    return inFlightOfConnection >= maxInFlightPerConnection
+           || inFlight.get() >= maxInFlight
+           || queuedBytes.get() >= maxQueuedBytes;
+  }
+
+  boolean isRelieved(int inFlightOfConnection) {
+    return inFlightOfConnection <= maxInFlightPerConnection / 2 && isServerRelieved();
+  }
+
+  boolean isServerRelieved() {
+    return inFlight.get() <= maxInFlight / 2 && queuedBytes.get() <= maxQueuedBytes / 2;
+  }
+
+  /**
+   * The high-water mark of the write queue of a socket, Netty keeps its low-water mark at the half.
+   */
+  int maxQueuedBytesPerConnection() {
+    return maxQueuedBytesPerConnection;
+  }
+
+  void accepted() {
+    inFlight.incrementAndGet();
+  }
+
+  void completed() {
+    inFlight.decrementAndGet();
+    signalIfRelieved();
+  }
+
+  void enqueued(int bytes) {
+    queuedBytes.addAndGet(bytes);
+  }
+
+  void written(int bytes) {
+    queuedBytes.addAndGet(-bytes);
+    signalIfRelieved();
+  }
+
+  /**
+   * Run {@code relief} once the server is relieved, on the thread that relieves it.
+   */
+  void awaitRelief(Runnable relief) {
+    awaiting.offer(relief);
+    // relieved in between
+    signalIfRelieved();
+  }
+
+  private void signalIfRelieved() {
+    if (awaiting.isEmpty() || !isServerRelieved()) {
+      return;
+    }
+    Runnable relief;
+    while ((relief = awaiting.poll()) != null) {
+      relief.run();
+    }
+  }
+}
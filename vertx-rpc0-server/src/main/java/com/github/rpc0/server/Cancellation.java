@@ -0,0 +1,31 @@
+package com.github.rpc0.server;
+
+import lombok.NonNull;
+
+/**
+ * Lets a service abort the work of a request the client has cancelled, whose result would be dropped anyway.
+ * A client cancels a request only once its call timed out, a call has no other way to be cancelled.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+public final class Cancellation {
+
+  private Cancellation() {
+  }
+
+  /**
+   * Register {@code hook} to run on the event loop of the connection if the request being invoked is cancelled,
+   * to be called on entry of the service method, before going asynchronous.
+   *
+   * @return false outside the call of a service method, or within the call of a one-way request never cancelled
+   */
+  public static boolean onCancel(@NonNull Runnable hook) {
+    CurrentInvocation current = CurrentInvocation.get();
+    ServiceInvoker invoker = current.invoker();
+    if (invoker == null) {
+      return false;
+    }
+    return invoker.onCancel(current.requestId(), hook);
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.rpc0.server;
+
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import lombok.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes frames to the channel without flushing each of them, the pending writes are flushed together
+ * at the end of the event-loop turn (or after a delay), or as soon as {@code maxBatchedWrites} writes are pending.
+ *
+ * @author fishzhao
+ * @since 2022-03-10
+ */
+final class CoalescingWriter {
+
+  private final ChannelHandlerContext ctx;
+  private final EventExecutor eventLoop;
+  private final int maxBatchedWrites;
+  private final long flushDelayMicros;
+  private final Runnable flushTask = this::flush;
+  // only accessed on the event loop
+  private int pendingWrites = 0;
+  private boolean flushScheduled = false;
+
+  CoalescingWriter(@NonNull ChannelHandlerContext ctx, int maxBatchedWrites, long flushDelayMicros) {
+    Preconditions.checkArgument(maxBatchedWrites > 0, "Illegal maxBatchedWrites: %s", maxBatchedWrites);
+    Preconditions.checkArgument(flushDelayMicros >= 0, "Illegal flushDelayMicros: %s", flushDelayMicros);
+    this.ctx = ctx;
+    this.eventLoop = ctx.executor();
+    this.maxBatchedWrites = maxBatchedWrites;
+    this.flushDelayMicros = flushDelayMicros;
+  }
+
+  /**
+   * @param handler called on the event loop once the frame is flushed, nullable
+   */
+  void write(ByteBuf byteBuf, Handler<AsyncResult<Void>> handler) {
+    if (!eventLoop.inEventLoop()) {
+      eventLoop.execute(() -> write(byteBuf, handler));
+      return;
+    }
+    ChannelPromise promise = ctx.newPromise();
+    if (handler != null) {
+      promise.addListener(future -> handler.handle(future.isSuccess()
+              ? Future.succeededFuture() : Future.failedFuture(future.cause())));
+    }
+    ctx.write(byteBuf, promise);
+    if (++pendingWrites >= maxBatchedWrites) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      if (flushDelayMicros > 0) {
+        eventLoop.schedule(flushTask, flushDelayMicros, TimeUnit.MICROSECONDS);
+      } else {
+        eventLoop.execute(flushTask);
+      }
+    }
+  }
+
+  private void flush() {
+    flushScheduled = false;
+    if (pendingWrites > 0) {
+      pendingWrites = 0;
+      ctx.flush();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.InvokeSpec;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * The request whose service method is being called on this thread, behind {@link InvocationDeadline}
+ * and {@link Cancellation}.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+final class CurrentInvocation {
+
+  private static final FastThreadLocal<CurrentInvocation> CURRENT = new FastThreadLocal<>() {
+    @Override
+    protected CurrentInvocation initialValue() {
+      return new CurrentInvocation();
+    }
+  };
+
+  // null outside the call of a service method
+  private ServiceInvoker invoker;
+  private long requestId;
+  private long deadline = InvokeSpec.NO_DEADLINE;
+
+  private CurrentInvocation() {
+  }
+
+  static CurrentInvocation get() {
+    return CURRENT.get();
+  }
+
+  ServiceInvoker invoker() {
+    return invoker;
+  }
+
+  long requestId() {
+    return requestId;
+  }
+
+  long deadline() {
+    return deadline;
+  }
+
+  void enter(ServiceInvoker invoker, long requestId, long deadline) {
+    this.invoker = invoker;
+    this.requestId = requestId;
+    this.deadline = deadline;
+  }
+
+  void exit() {
+    invoker = null;
+    deadline = InvokeSpec.NO_DEADLINE;
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.InvokeSpec;
+
+/**
+ * The deadline of the request being invoked, the budget the client sent from the arrival of the request
+ * in the clock of the server, set while the service method is called.
+ * A service reads its remaining budget on entry, before going asynchronous, to bound the calls it makes downstream.
+ *
+ * @author fishzhao
+ * @since 2022-03-17
+ */
+public final class InvocationDeadline {
+
+  private InvocationDeadline() {
+  }
+
+  /**
+   * @return the epoch millis of the deadline, {@link InvokeSpec#NO_DEADLINE} if the request has none
+   * or outside the call of a service method
+   */
+  public static long deadline() {
+    return CurrentInvocation.get().deadline();
+  }
+
+  /**
+   * @return the millis left before the deadline, {@link Long#MAX_VALUE} without deadline, not positive once expired
+   */
+  public static long remainingMillis() {
+    long deadline = deadline();
+    return deadline == InvokeSpec.NO_DEADLINE ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+  }
+}
@@ -12,6 +12,7 @@ import lombok.NonNull;
 
 import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -26,16 +27,28 @@ public final class Rpc0Server extends AbstractVerticle {
   private final MessageTransport messageTransport;
   private final NetServerOptions netServerOptions;
   private final long keepAliveMills;
+  private final boolean nativeFrameDecoder;
+  private final int maxBatchedWrites;
+  private final long flushDelayMicros;
+  private final AdmissionControl admission;
   private NetServer netServer;
 
   Rpc0Server(@NonNull ServiceLookup serviceLookup,
              @NonNull MessageTransport messageTransport,
              @NonNull NetServerOptions netServerOptions,
-             @NonNull Duration keepAliveDuration) {
+             @NonNull Duration keepAliveDuration,
+             boolean nativeFrameDecoder,
+             int maxBatchedWrites,
+             @NonNull Duration flushDelay,
+             @NonNull AdmissionControl admission) {
     this.serviceLookup = serviceLookup;
     this.messageTransport = messageTransport;
     this.netServerOptions = netServerOptions;
     this.keepAliveMills = keepAliveDuration.toMillis();
+    this.nativeFrameDecoder = nativeFrameDecoder;
+    this.maxBatchedWrites = maxBatchedWrites;
+    this.flushDelayMicros = TimeUnit.NANOSECONDS.toMicros(flushDelay.toNanos());
+    this.admission = admission;
   }
 
   @Override
@@ -81,10 +94,14 @@ public final class Rpc0Server extends AbstractVerticle {
 
 
   private void handleConnect(NetSocket netSocket) {
+    NetSocketInternal socket = (NetSocketInternal) netSocket;
     ServiceInvoker invoker = new ServiceInvoker(
-            (NetSocketInternal) netSocket,
+            socket,
             messageTransport,
-            serviceLookup
+            serviceLookup,
+            nativeFrameDecoder,
+            new CoalescingWriter(socket.channelHandlerContext(), maxBatchedWrites, flushDelayMicros),
+            admission
     );
     invoker.registerHandlers(() ->
             context.runOnContext(v ->
@@ -3,20 +3,25 @@ package com.github.rpc0.server;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ClassToInstanceMap;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.MutableClassToInstanceMap;
+import com.github.rpc0.annotation.GeneratedNames;
 import com.github.rpc0.conf.AbstractConfigurator;
 import com.github.rpc0.conf.ConstructingProcess;
 import com.github.rpc0.kryo.KryoFactory;
 import com.github.rpc0.transport.KryoMessageTransport;
 import com.github.rpc0.transport.MessageTransport;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
 import io.vertx.core.net.NetServerOptions;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @author fishzhao
@@ -26,9 +31,18 @@ import java.util.Map;
 public final class Rpc0ServerBuilder extends AbstractConfigurator<Rpc0ServerBuilder> implements ConstructingProcess<Rpc0Server> {
 
   private final ClassToInstanceMap<Object> registry = MutableClassToInstanceMap.create();
+  private final Map<Class<?>, ServiceSkeleton> skeletons = new HashMap<>();
   private final Vertx vertx;
   private final NetServerOptions netServerOptions;
   private Duration keepAliveDuration = Duration.ofMinutes(2); // 如果连接五分钟未活动则关闭
+  private boolean nativeFrameDecoder = false;
+  private int maxBatchedWrites = 64;
+  private Duration flushDelay = Duration.ZERO;
+  private int maxInFlightPerConnection = 1024;
+  private int maxInFlight = Integer.MAX_VALUE;
+  // the default high-water mark of Netty
+  private int maxQueuedBytesPerConnection = 64 * 1024;
+  private long maxQueuedBytes = Long.MAX_VALUE;
 
   public Rpc0ServerBuilder(@NonNull Vertx vertx,
                            @NonNull NetServerOptions netServerOptions,
@@ -44,20 +58,48 @@ public final class Rpc0ServerBuilder extends AbstractConfigurator<Rpc0ServerBuil
 
   @Override
   public Rpc0Server build() {
+    return newServerSupplier().get();
+  }
+
+  /**
+   * Build a supplier of server verticles sharing one dispatch table, deploy it with several instances
+   * to bind the same port from many event loops.
+   */
+  public Supplier<Verticle> buildSupplier() {
+    Supplier<Rpc0Server> supplier = newServerSupplier();
+    return supplier::get;
+  }
+
+  /**
+   * Deploy {@code instances} server verticles, the connections are spread over their event loops.
+   */
+  public Future<String> deploy(int instances) {
+    Preconditions.checkArgument(instances > 0, "Illegal instances: %s", instances);
+    return vertx.deployVerticle(buildSupplier(), new DeploymentOptions().setInstances(instances));
+  }
+
+  private Supplier<Rpc0Server> newServerSupplier() {
     Preconditions.checkArgument(!registry.isEmpty(), "No service has been registered!");
-    Map<String, Object> classNameInstanceMap = Maps.newHashMapWithExpectedSize(registry.size());
-    for (Map.Entry<Class<?>, Object> entry : registry.entrySet()) {
-      classNameInstanceMap.put(
-              entry.getKey().getTypeName(),
-              entry.getValue()
-      );
-    }
-    ServiceLookup serviceLookup = new ServiceLookup(ImmutableMap.copyOf(classNameInstanceMap));
-    MessageTransport messageTransport = new KryoMessageTransport(new KryoFactory(getClassLoader(), getKryoRegistry()));
-    return new Rpc0Server(serviceLookup,
+    ServiceLookup serviceLookup = ServiceLookup.create(ImmutableMap.copyOf(registry), ImmutableMap.copyOf(skeletons));
+    log.info("Resolved {} service methods from {} bindings", serviceLookup.size(), registry.size());
+    MessageTransport messageTransport = new KryoMessageTransport(
+            new KryoFactory(getClassLoader(), getKryoRegistry(), serviceLookup::methodTypeOf));
+    NetServerOptions netServerOptions = new NetServerOptions(this.netServerOptions);
+    Duration keepAliveDuration = this.keepAliveDuration;
+    boolean nativeFrameDecoder = this.nativeFrameDecoder;
+    int maxBatchedWrites = this.maxBatchedWrites;
+    Duration flushDelay = this.flushDelay;
+    // the limits of the server are shared by its verticle instances
+    AdmissionControl admission = new AdmissionControl(
+            maxInFlightPerConnection, maxInFlight, maxQueuedBytesPerConnection, maxQueuedBytes);
+    return () -> new Rpc0Server(serviceLookup,
             messageTransport,
             netServerOptions,
-            keepAliveDuration);
+            keepAliveDuration,
+            nativeFrameDecoder,
+            maxBatchedWrites,
+            flushDelay,
+            admission);
   }
 
   public Rpc0ServerBuilder setKeepAliveDuration(@NonNull Duration keepAliveDuration) {
@@ -65,10 +107,79 @@ public final class Rpc0ServerBuilder extends AbstractConfigurator<Rpc0ServerBuil
     return this;
   }
 
+  /**
+   * Decode frames in the Netty pipeline instead of the Vert.x {@code RecordParser}.
+   */
+  public Rpc0ServerBuilder setNativeFrameDecoder(boolean nativeFrameDecoder) {
+    this.nativeFrameDecoder = nativeFrameDecoder;
+    return this;
+  }
+
+  /**
+   * Responses are flushed together at the end of the event-loop turn, or after {@code flushDelay} if positive,
+   * or as soon as {@code maxBatchedWrites} responses are pending, {@code maxBatchedWrites} of 1 flushes every response.
+   */
+  public Rpc0ServerBuilder setFlushCoalescing(int maxBatchedWrites, @NonNull Duration flushDelay) {
+    Preconditions.checkArgument(maxBatchedWrites > 0, "Illegal maxBatchedWrites: %s", maxBatchedWrites);
+    Preconditions.checkArgument(!flushDelay.isNegative(), "Negative flushDelay: %s", flushDelay);
+    this.maxBatchedWrites = maxBatchedWrites;
+    this.flushDelay = flushDelay;
+    return this;
+  }
+
+  /**
+   * Pause reading a connection while it has {@code maxInFlightPerConnection} requests in flight,
+   * or the server has {@code maxInFlight}, until both are down to half. The requests read meanwhile
+   * are invoked once reading resumes, those past their deadline by then fail with {@code DEADLINE_EXCEEDED}.
+   */
+  public Rpc0ServerBuilder setInFlightLimits(int maxInFlightPerConnection, int maxInFlight) {
+    Preconditions.checkArgument(maxInFlightPerConnection > 0,
+            "Illegal maxInFlightPerConnection: %s", maxInFlightPerConnection);
+    Preconditions.checkArgument(maxInFlight > 0, "Illegal maxInFlight: %s", maxInFlight);
+    this.maxInFlightPerConnection = maxInFlightPerConnection;
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  /**
+   * Pause reading a connection while its write queue holds {@code maxQueuedBytesPerConnection} bytes,
+   * or the responses queued by the server hold {@code maxQueuedBytes}, until both are down to half.
+   */
+  public Rpc0ServerBuilder setWriteQueueLimits(int maxQueuedBytesPerConnection, long maxQueuedBytes) {
+    Preconditions.checkArgument(maxQueuedBytesPerConnection > 0,
+            "Illegal maxQueuedBytesPerConnection: %s", maxQueuedBytesPerConnection);
+    Preconditions.checkArgument(maxQueuedBytes > 0, "Illegal maxQueuedBytes: %s", maxQueuedBytes);
+    this.maxQueuedBytesPerConnection = maxQueuedBytesPerConnection;
+    this.maxQueuedBytes = maxQueuedBytes;
+    return this;
+  }
+
   public <T> Rpc0ServerBuilder addBinding(@NonNull Class<? super T> type, @NonNull T instance) {
     Preconditions.checkArgument(type.isInterface(), "%s is not a interface!", type);
     registry.put(type, instance);
-    log.info("Add service binding: {} -> {}", type, instance);
+    ServiceSkeleton skeleton = createSkeleton(type, instance);
+    if (skeleton != null) {
+      skeletons.put(type, skeleton);
+    } else {
+      skeletons.remove(type);
+    }
+    log.info("Add service binding: {} -> {}, generated skeleton: {}", type, instance, skeleton != null);
     return this;
   }
+
+  // the skeleton generated by vertx-rpc0-processor for a service annotated with @Rpc0Service
+  private static ServiceSkeleton createSkeleton(Class<?> type, Object instance) {
+    Class<?> skeletonClass;
+    try {
+      skeletonClass = Class.forName(GeneratedNames.skeletonName(type.getName()), true, type.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    try {
+      return (ServiceSkeleton) skeletonClass.getConstructor(type).newInstance(instance);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("Ignore the generated skeleton of {}: {}", type, skeletonClass, e);
+      return null;
+    }
+  }
 }
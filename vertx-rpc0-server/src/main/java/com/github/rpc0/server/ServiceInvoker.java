@@ -3,16 +3,24 @@ package com.github.rpc0.server;
 import com.esotericsoftware.kryo.KryoException;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.github.rpc0.invoke.Cancel;
+import com.github.rpc0.invoke.Handshake;
 import com.github.rpc0.invoke.InvokeResult;
 import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.MethodTable;
 import com.github.rpc0.invoke.ResultCode;
+import com.github.rpc0.transport.MarkedLenFrameDecoder;
 import com.github.rpc0.transport.MarkedLenMessageHandler;
+import com.github.rpc0.transport.MessageExchange;
 import com.github.rpc0.transport.MessageTransport;
 import com.github.rpc0.transport.ParserHandler;
-import com.github.rpc0.transport.Prefix;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.EventExecutor;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
@@ -24,8 +32,10 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -37,12 +47,37 @@ import java.util.concurrent.atomic.AtomicLong;
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 final class ServiceInvoker implements ParserHandler {
 
+  // the optional encodings read by the server, announced in answer to the handshake of a client
+  private static final int FEATURES = Handshake.UNTAGGED_PARAMETERS
+                                      | Handshake.DEADLINES
+                                      | Handshake.CANCELLATION
+                                      | Handshake.ONE_WAY;
+
   private final TLongSet acceptedRequestIdSet = new TLongHashSet();
+  // touched by the event loop only, registered by the services of the requests in flight
+  private final TLongObjectMap<Runnable> cancelHooks = new TLongObjectHashMap<>();
   private final AtomicLong lastActiveTime = new AtomicLong(System.currentTimeMillis());
   @Getter(AccessLevel.PACKAGE)
   private final NetSocketInternal socket;
   private final MessageTransport messageTransport;
   private final ServiceLookup serviceLookup;
+  private final boolean nativeFrameDecoder;
+  private final CoalescingWriter writer;
+  private final AdmissionControl admission;
+  // touched by the event loop only, reading is paused while a limit of the admission control is reached
+  private boolean paused = false;
+  private boolean awaitingRelief = false;
+  // touched by the event loop only, the requests of a done read left once reading paused, invoked once it resumes
+  private final Deque<InvokeSpec> backlog = new ArrayDeque<>();
+  // touched by the event loop only, the one-way requests being invoked, which are not accepted by id
+  private int oneWayInFlight = 0;
+  private final Runnable oneWayCompletion = this::oneWayCompleted;
+  private final Runnable relief = () -> eventLoop().execute(() -> {
+    awaitingRelief = false;
+    resumeIfRelieved();
+  });
+  // announced by the handshake of the client, the results of a final type are written without their class
+  private volatile boolean untaggedResults;
 
   private static String buildErrorMessage(Throwable cause) {
     return Strings.lenientFormat("%s(\"%s\")",
@@ -50,7 +85,13 @@ final class ServiceInvoker implements ParserHandler {
   }
 
   void registerHandlers(Runnable dispose) {
-    socket.handler(new MarkedLenMessageHandler(this));
+    if (nativeFrameDecoder) {
+      MarkedLenFrameDecoder.install(socket, this);
+    } else {
+      socket.handler(new MarkedLenMessageHandler(this));
+    }
+    socket.setWriteQueueMaxSize(admission.maxQueuedBytesPerConnection());
+    socket.drainHandler(v -> resumeIfRelieved());
     SocketAddress socketAddress = socket.remoteAddress();
     socket.closeHandler(v -> {
       lastActiveTime.set(-1L);
@@ -69,6 +110,13 @@ final class ServiceInvoker implements ParserHandler {
     log.error("Fetal error on [{}]: ", socket.remoteAddress(), cause);
     ResultCode resultCode = cause instanceof KryoException
             ? ResultCode.PROTOCOL_ERROR : ResultCode.UNKNOWN_ERROR;
+    InvokeSpec backlogged;
+    while ((backlogged = backlog.poll()) != null) {
+      if (!backlogged.isOneWay()) {
+        // answered below like the requests in flight
+        admission.accepted();
+      }
+    }
     if (acceptedRequestIdSet.isEmpty()) {
       socket.close();
       return;
@@ -95,70 +143,154 @@ final class ServiceInvoker implements ParserHandler {
   // This method associated with the same event-loop, so it's thread-safe
   @Override
   public void handle(Buffer event) {
-    InvokeSpec invokeSpec = (InvokeSpec) messageTransport.deserialize(event.getByteBuf());
-    long requestId = invokeSpec.getRequestId();
-    if (!invokeSpec.getParameters().isTypeMatch(invokeSpec.getMethodType())) {
-      fail(requestId, ResultCode.PARAMETER_ERROR,
-              "Parameter type not match: %s, %s", invokeSpec.getMethodType(), invokeSpec.getParameters()
-      );
+    MessageExchange message = messageTransport.deserialize(event.getByteBuf());
+    if (message instanceof Handshake) {
+      handshake((Handshake) message);
       return;
     }
-    if (!acceptedRequestIdSet.add(requestId)) {
-      fail(requestId, ResultCode.PARAMETER_ERROR,
+    if (message instanceof Cancel) {
+      cancel(((Cancel) message).getRequestId());
+      return;
+    }
+    InvokeSpec invokeSpec = (InvokeSpec) message;
+    long requestId = invokeSpec.getRequestId();
+    if (invokeSpec.isOneWay()) {
+      ++oneWayInFlight;
+    } else if (!acceptedRequestIdSet.add(requestId)) {
+      reject(requestId, ResultCode.PARAMETER_ERROR,
               "Duplicated requestId: %s", requestId);
       return;
     }
-    MethodHandle methodHandle;
-    try {
-      methodHandle = serviceLookup.lookup(invokeSpec);
-    } catch (Exception e) {
-      fail(requestId,
-              ResultCode.LOOKUP_ERROR,
-              "Exception while lookup method: %s", e.getMessage());
+    if (paused) {
+      // read along with the request that paused reading, invoked once it resumes unless expired by then
+      backlog.add(invokeSpec);
+      return;
+    }
+    invoke(invokeSpec);
+  }
+
+  private void invoke(InvokeSpec invokeSpec) {
+    long requestId = invokeSpec.getRequestId();
+    admission.accepted();
+    pauseIfOverloaded();
+    // read without its parameters if expired already, or expired in the backlog
+    long now = System.currentTimeMillis();
+    if (invokeSpec.getParameters() == null || invokeSpec.isExpired(now)) {
+      fail(requestId, ResultCode.DEADLINE_EXCEEDED,
+              "Deadline exceeded by %s ms", now - invokeSpec.getDeadline());
       return;
     }
-    if (methodHandle == null) {
+    ServiceMethod serviceMethod = serviceLookup.lookup(invokeSpec);
+    if (serviceMethod == null) {
       fail(requestId,
               ResultCode.LOOKUP_ERROR,
-              "Method not found: \"%s\"", invokeSpec.getMethodName());
+              "Method not found: \"%s\"", invokeSpec.hasMethodId()
+                      ? invokeSpec.getMethodId() : invokeSpec.getMethodName());
+      return;
+    }
+    MethodType methodType = invokeSpec.hasMethodId()
+            ? serviceMethod.getMethodType() : invokeSpec.getMethodType();
+    if (!invokeSpec.getParameters().isTypeMatch(methodType)) {
+      fail(requestId, ResultCode.PARAMETER_ERROR,
+              "Parameter type not match: %s, %s", methodType, invokeSpec.getParameters()
+      );
       return;
     }
+    Class<?> resultType = invokeSpec.hasMethodId()
+            ? serviceMethod.getResultType() : methodType.returnType();
+    CurrentInvocation current = CurrentInvocation.get();
+    current.enter(this, requestId, invokeSpec.getDeadline());
     try {
       @SuppressWarnings("unchecked")
-      Future<Object> future = (Future<Object>) methodHandle
-              .invokeWithArguments(invokeSpec.getParameters());
+      Future<Object> future = (Future<Object>) serviceMethod.invoke(invokeSpec.getParameters());
       future.onComplete(result -> {
         if (result.succeeded()) {
           Object ret = result.result();
-          Class<?> resultType = invokeSpec.getMethodType().returnType();
           if (ret != null
               && !(resultType.isInstance(ret))) {
             fail(requestId, ResultCode.INVOCATION_ERROR,
                     "Actual result type not match, required %s, but found: %s", resultType, ret.getClass());
             return;
           }
-          success(requestId, ret);
+          success(requestId, ret, resultType);
         } else {
           fail(requestId, ResultCode.INVOCATION_ERROR, result.cause());
         }
       });
     } catch (Throwable cause) {
       fail(requestId, ResultCode.UNKNOWN_ERROR, cause);
+    } finally {
+      current.exit();
     }
   }
 
-  private void success(long requestId, Object object) {
+  // the request is forgotten, its result is neither serialized nor written
+  private void cancel(long requestId) {
+    if (!acceptedRequestIdSet.remove(requestId)) {
+      return;
+    }
+    if (!backlog.isEmpty() && backlog.removeIf(spec -> spec.getRequestId() == requestId)) {
+      // neither invoked nor counted by the admission control
+      return;
+    }
+    admission.completed();
+    Runnable hook = cancelHooks.remove(requestId);
+    if (hook != null) {
+      try {
+        hook.run();
+      } catch (Throwable cause) {
+        log.warn("Cancellation hook of request {} failed: ", requestId, cause);
+      }
+    }
+    resumeIfRelieved();
+  }
+
+  boolean onCancel(long requestId, Runnable hook) {
+    // never cancelled, nor removed by a result
+    if (requestId == InvokeSpec.ONE_WAY_REQUEST_ID) {
+      return false;
+    }
+    Runnable previous = cancelHooks.put(requestId, hook);
+    if (previous != null) {
+      cancelHooks.put(requestId, () -> {
+        previous.run();
+        hook.run();
+      });
+    }
+    return true;
+  }
+
+  private void handshake(Handshake handshake) {
+    untaggedResults = handshake.supports(Handshake.UNTAGGED_RESULTS);
+    MethodTable methodTable = serviceLookup.getMethodTable();
+    ByteBufAllocator alloc = socket.channelHandlerContext().alloc();
+    writer.write(messageTransport.serializeFrame(alloc, new Handshake(System.currentTimeMillis(), FEATURES)), null);
+    writer.write(messageTransport.serializeFrame(alloc, methodTable), null);
+    log.debug("Publish {} method ids to: {}", methodTable.size(), socket.remoteAddress());
+  }
+
+  private void success(long requestId, Object object, Class<?> resultType) {
+    if (requestId == InvokeSpec.ONE_WAY_REQUEST_ID) {
+      completeOneWay();
+      return;
+    }
     InvokeResult invokeResult = new InvokeResult(
             requestId,
             System.currentTimeMillis(),
             ResultCode.OK,
             null,
-            object
+            object,
+            untaggedResults ? resultType : null
     );
     writeResult(invokeResult, null);
   }
 
   private void fail(long requestId, ResultCode code, Throwable cause) {
+    if (requestId == InvokeSpec.ONE_WAY_REQUEST_ID) {
+      log.warn("One-way request from [{}] failed with {}: ", socket.remoteAddress(), code, cause);
+      completeOneWay();
+      return;
+    }
     InvokeResult invokeResult = new InvokeResult(
             requestId,
             System.currentTimeMillis(),
@@ -170,6 +302,12 @@ final class ServiceInvoker implements ParserHandler {
   }
 
   private void fail(long requestId, ResultCode code, String template, Object... args) {
+    if (requestId == InvokeSpec.ONE_WAY_REQUEST_ID) {
+      log.warn("One-way request from [{}] failed with {}: {}",
+              socket.remoteAddress(), code, Strings.lenientFormat(template, args));
+      completeOneWay();
+      return;
+    }
     InvokeResult invokeResult = new InvokeResult(
             requestId,
             System.currentTimeMillis(),
@@ -180,17 +318,114 @@ final class ServiceInvoker implements ParserHandler {
     writeResult(invokeResult, null);
   }
 
+  // answers a request never accepted, leaving the accepted request of the same id and the admission counts alone
+  private void reject(long requestId, ResultCode code, String template, Object... args) {
+    InvokeResult invokeResult = new InvokeResult(
+            requestId,
+            System.currentTimeMillis(),
+            code,
+            Strings.lenientFormat(template, args),
+            null
+    );
+    writer.write(messageTransport.serializeFrame(socket.channelHandlerContext().alloc(), invokeResult), null);
+  }
+
   private void writeResult(InvokeResult result, Promise<Void> promise) {
+    if (!eventLoop().inEventLoop()) {
+      eventLoop().execute(() -> writeResult(result, promise));
+      return;
+    }
+    long requestId = result.getRequestId();
+    if (!cancelHooks.isEmpty()) {
+      cancelHooks.remove(requestId);
+    }
+    if (!acceptedRequestIdSet.contains(requestId)) {
+      // cancelled by the client
+      if (promise != null) {
+        promise.complete();
+      }
+      return;
+    }
     lastActiveTime.set(result.getTimestamp());
-    ByteBuf byteBuf = Prefix.prependTo(messageTransport
-            .serialize(socket.channelHandlerContext().alloc(), result));
-    socket.write(Buffer.buffer(byteBuf), ar -> {
+    ByteBuf byteBuf = messageTransport
+            .serializeFrame(socket.channelHandlerContext().alloc(), result);
+    int bytes = byteBuf.readableBytes();
+    admission.enqueued(bytes);
+    writer.write(byteBuf, ar -> {
       //On the socket context, it's thread-safe
-      acceptedRequestIdSet.remove(result.getRequestId());
+      if (acceptedRequestIdSet.remove(requestId)) {
+        admission.completed();
+      }
+      admission.written(bytes);
+      resumeIfRelieved();
       if (promise != null) {
         promise.handle(ar);
       }
     });
+    pauseIfOverloaded();
+  }
+
+  // nothing is written for a one-way request, it is in flight until its invocation completes
+  private void completeOneWay() {
+    if (eventLoop().inEventLoop()) {
+      oneWayCompleted();
+    } else {
+      eventLoop().execute(oneWayCompletion);
+    }
+  }
+
+  private void oneWayCompleted() {
+    --oneWayInFlight;
+    lastActiveTime.set(System.currentTimeMillis());
+    admission.completed();
+    resumeIfRelieved();
+  }
+
+  private EventExecutor eventLoop() {
+    return socket.channelHandlerContext().executor();
+  }
+
+  // paused at the channel, which holds for the native frame decoder as well, a done read still hands its frames over
+  private void setAutoRead(boolean autoRead) {
+    socket.channelHandlerContext().channel().config().setAutoRead(autoRead);
+  }
+
+  // neither requests nor responses pile up while reading is paused
+  private void pauseIfOverloaded() {
+    if (!paused && (socket.writeQueueFull() || admission.isOverloaded(inFlight()))) {
+      paused = true;
+      setAutoRead(false);
+      // waits for the server if that is the limit reached
+      resumeIfRelieved();
+    }
+  }
+
+  private void resumeIfRelieved() {
+    if (!paused || socket.writeQueueFull()) {
+      return;
+    }
+    if (admission.isRelieved(inFlight())) {
+      paused = false;
+      drainBacklog();
+      if (!paused) {
+        setAutoRead(true);
+      }
+    } else if (!awaitingRelief && !admission.isServerRelieved()) {
+      awaitingRelief = true;
+      admission.awaitRelief(relief);
+    }
+  }
+
+  private void drainBacklog() {
+    InvokeSpec invokeSpec;
+    while (!paused && (invokeSpec = backlog.poll()) != null) {
+      invoke(invokeSpec);
+    }
+  }
+
+  // the backlog is accepted, not in flight
+  private int inFlight() {
+    return acceptedRequestIdSet.size() + oneWayInFlight - backlog.size();
   }
 
   long lastActiveTime() {
@@ -1,39 +1,158 @@
 package com.github.rpc0.server;
 
 import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.MethodTable;
+import com.github.rpc0.reflection.ReflectionUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import io.vertx.core.Future;
-import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
+ * Immutable dispatch table of all bound service methods, resolved once while building the server,
+ * a lookup is a single allocation-free probe of an open-addressing table.
+ *
  * @author fishzhao
  * @since 2021-12-20
  */
-@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@Slf4j
 public final class ServiceLookup {
 
-  private final Map<String, Object> serviceMap;
+  private final ServiceMethod[] table;
+  private final int mask;
+  // indexed by method id
+  private final ServiceMethod[] serviceMethods;
+  @Getter
+  private final MethodTable methodTable;
+
+  private ServiceLookup(List<ServiceMethod> serviceMethods) {
+    // keep load factor below 0.5, so there is always an empty slot to stop probing
+    int capacity = Integer.highestOneBit(Math.max(serviceMethods.size(), 1) << 2);
+    this.table = new ServiceMethod[capacity];
+    this.mask = capacity - 1;
+    this.serviceMethods = serviceMethods.toArray(new ServiceMethod[0]);
+    Map<String, Integer> methodIds = Maps.newLinkedHashMapWithExpectedSize(serviceMethods.size());
+    for (ServiceMethod serviceMethod : serviceMethods) {
+      int index = serviceMethod.hash() & mask;
+      while (table[index] != null) {
+        index = (index + 1) & mask;
+      }
+      table[index] = serviceMethod;
+      methodIds.put(MethodTable.signatureOf(
+              serviceMethod.getServiceName(),
+              serviceMethod.getMethodName(),
+              serviceMethod.getMethodType().changeReturnType(serviceMethod.getResultType())
+      ), serviceMethod.getMethodId());
+    }
+    this.methodTable = new MethodTable(methodIds);
+  }
+
+  static ServiceLookup create(@NonNull Map<Class<?>, Object> bindings) {
+    return create(bindings, Collections.emptyMap());
+  }
+
+  /**
+   * @param skeletons generated skeletons of the bound services, the methods of a service without skeleton
+   *                  are called through method handles
+   */
+  static ServiceLookup create(@NonNull Map<Class<?>, Object> bindings,
+                              @NonNull Map<Class<?>, ServiceSkeleton> skeletons) {
+    List<ServiceMethod> serviceMethods = new ArrayList<>();
+    for (Map.Entry<Class<?>, Object> entry : bindings.entrySet()) {
+      resolve(entry.getKey(), entry.getValue(), skeletons.get(entry.getKey()), serviceMethods);
+    }
+    return new ServiceLookup(serviceMethods);
+  }
 
   @SneakyThrows
-  public MethodHandle lookup(@NonNull InvokeSpec invokeSpec) {
-    Object service = serviceMap.get(invokeSpec.getCallSiteClassName());
-    if (service == null) {
-      return null;
+  private static void resolve(Class<?> type,
+                              Object service,
+                              ServiceSkeleton skeleton,
+                              List<ServiceMethod> serviceMethods) {
+    Preconditions.checkArgument(type.isInstance(service), "%s is not an instance of %s", service, type);
+    String serviceName = type.getTypeName();
+    for (Method method : type.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() != Future.class) {
+        log.debug("Skip method not supported for remote call: {}", method);
+        continue;
+      }
+      MethodHandle methodHandle = MethodHandles.publicLookup()
+              .unreflect(method)
+              .bindTo(service);
+      serviceMethods.add(new ServiceMethod(
+              serviceMethods.size(),
+              serviceName,
+              method.getName(),
+              MethodType.methodType(Future.class, method.getParameterTypes()),
+              resultTypeOf(method),
+              methodHandle,
+              skeleton,
+              skeleton != null ? skeleton.indexOf(method) : -1
+      ));
     }
-    MethodHandle methodHandle = MethodHandles.publicLookup()
-            .findVirtual(service.getClass(),
-                    invokeSpec.getMethodName(),
-                    MethodType.methodType(Future.class, invokeSpec.getMethodType().parameterList()
-                    ));
-    return methodHandle.bindTo(service);
   }
 
+  private static Class<?> resultTypeOf(Method method) {
+    try {
+      Class<?> resultType = ReflectionUtil.getFutureResultType(method.getGenericReturnType());
+      if (resultType != null) {
+        return resultType;
+      }
+    } catch (RuntimeException e) {
+      log.debug("Unresolvable result type of method: {}", method, e);
+    }
+    return Object.class;
+  }
 
+  public ServiceMethod lookup(@NonNull InvokeSpec invokeSpec) {
+    if (invokeSpec.hasMethodId()) {
+      return lookup(invokeSpec.getMethodId());
+    }
+    return lookup(invokeSpec.getCallSiteClassName(), invokeSpec.getMethodName(), invokeSpec.getMethodType());
+  }
+
+  public ServiceMethod lookup(int methodId) {
+    return methodId >= 0 && methodId < serviceMethods.length ? serviceMethods[methodId] : null;
+  }
+
+  /**
+   * @return the method type of a published method id, or null if unknown
+   */
+  public MethodType methodTypeOf(int methodId) {
+    ServiceMethod serviceMethod = lookup(methodId);
+    return serviceMethod != null ? serviceMethod.getMethodType() : null;
+  }
+
+  public ServiceMethod lookup(@NonNull String serviceName,
+                              @NonNull String methodName,
+                              @NonNull MethodType methodType) {
+    int hash = ServiceMethod.hash(serviceName, methodName, methodType);
+    for (int index = hash & mask; ; index = (index + 1) & mask) {
+      ServiceMethod serviceMethod = table[index];
+      if (serviceMethod == null) {
+        return null;
+      }
+      if (serviceMethod.hash() == hash
+          && serviceMethod.matches(serviceName, methodName, methodType)) {
+        return serviceMethod;
+      }
+    }
+  }
+
+  public int size() {
+    return serviceMethods.length;
+  }
 }
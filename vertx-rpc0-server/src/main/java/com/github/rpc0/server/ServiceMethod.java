@@ -0,0 +1,139 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.ParameterArray;
+import com.google.common.base.MoreObjects;
+import io.vertx.core.Future;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * A resolved, service-bound method of a registered interface.
+ *
+ * @author fishzhao
+ * @since 2022-03-02
+ */
+@Getter
+public final class ServiceMethod {
+
+  private static final MethodHandle PARAMETER_GETTER = parameterGetter();
+
+  private final int methodId;
+  private final String serviceName;
+  private final String methodName;
+  private final MethodType methodType;
+  // resolved from the generic return type, same as the return type of the call site
+  private final Class<?> resultType;
+  private final MethodHandle methodHandle;
+  @Getter(AccessLevel.NONE)
+  private final MethodHandle invoker;
+  // generated dispatch, preferred over the invoker
+  @Getter(AccessLevel.NONE)
+  private final ServiceSkeleton skeleton;
+  @Getter(AccessLevel.NONE)
+  private final int skeletonIndex;
+  @Getter(AccessLevel.NONE)
+  private final int hash;
+
+  ServiceMethod(int methodId,
+                @NonNull String serviceName,
+                @NonNull String methodName,
+                @NonNull MethodType methodType,
+                @NonNull Class<?> resultType,
+                @NonNull MethodHandle methodHandle,
+                ServiceSkeleton skeleton,
+                int skeletonIndex) {
+    this.methodId = methodId;
+    this.serviceName = serviceName;
+    this.methodName = methodName;
+    this.methodType = methodType;
+    this.resultType = resultType;
+    this.methodHandle = methodHandle;
+    this.invoker = spreadInvoker(methodHandle);
+    this.skeleton = skeletonIndex >= 0 ? skeleton : null;
+    this.skeletonIndex = skeletonIndex;
+    this.hash = hash(serviceName, methodName, methodType);
+  }
+
+  @SneakyThrows
+  private static MethodHandle parameterGetter() {
+    return MethodHandles.publicLookup()
+            .findVirtual(ParameterArray.class, "get", MethodType.methodType(Object.class, int.class));
+  }
+
+  /**
+   * Adapt a bound method handle to {@code (ParameterArray)Future}, every argument is taken from the array directly,
+   * so the invocation neither copies the parameters nor creates any adapter.
+   */
+  private static MethodHandle spreadInvoker(MethodHandle methodHandle) {
+    int parameterCnt = methodHandle.type().parameterCount();
+    // varargs methods are called with an already packed array
+    MethodHandle generic = methodHandle.asFixedArity()
+            .asType(MethodType.genericMethodType(parameterCnt).changeReturnType(Future.class));
+    if (parameterCnt == 0) {
+      return MethodHandles.dropArguments(generic, 0, ParameterArray.class);
+    }
+    MethodHandle[] getters = new MethodHandle[parameterCnt];
+    for (int i = 0; i < parameterCnt; ++i) {
+      getters[i] = MethodHandles.insertArguments(PARAMETER_GETTER, 1, i);
+    }
+    MethodHandle filtered = MethodHandles.filterArguments(generic, 0, getters);
+    return MethodHandles.permuteArguments(filtered,
+            MethodType.methodType(Future.class, ParameterArray.class),
+            new int[parameterCnt]);
+  }
+
+  // only parameter types take part, the return type of the call site is the actual result type
+  static int hash(String serviceName, String methodName, MethodType methodType) {
+    int h = 31 * serviceName.hashCode() + methodName.hashCode();
+    for (int i = 0, n = methodType.parameterCount(); i < n; ++i) {
+      h = 31 * h + methodType.parameterType(i).hashCode();
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * The caller must ensure the parameters match the {@link #getMethodType()}.
+   */
+  public Future<?> invoke(ParameterArray parameters) throws Throwable {
+    if (skeleton != null) {
+      return skeleton.invoke(skeletonIndex, parameters);
+    }
+    return (Future<?>) invoker.invokeExact(parameters);
+  }
+
+  int hash() {
+    return hash;
+  }
+
+  boolean matches(String serviceName, String methodName, MethodType methodType) {
+    int parameterCnt = methodType.parameterCount();
+    if (parameterCnt != this.methodType.parameterCount()
+        || !this.methodName.equals(methodName)
+        || !this.serviceName.equals(serviceName)) {
+      return false;
+    }
+    for (int i = 0; i < parameterCnt; ++i) {
+      if (methodType.parameterType(i) != this.methodType.parameterType(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+            .add("methodId", methodId)
+            .add("serviceName", serviceName)
+            .add("methodName", methodName)
+            .add("methodType", methodType)
+            .add("skeleton", skeleton != null)
+            .toString();
+  }
+}
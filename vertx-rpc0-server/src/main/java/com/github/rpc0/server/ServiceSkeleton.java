@@ -0,0 +1,46 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.ParameterArray;
+import io.vertx.core.Future;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import java.lang.reflect.Method;
+
+/**
+ * Base class of the server skeletons generated by vertx-rpc0-processor, a skeleton calls the bound service
+ * with statically typed arguments, switching on the index of the {@link Method}.
+ *
+ * @author fishzhao
+ * @since 2022-03-16
+ */
+public abstract class ServiceSkeleton {
+
+  private final Method[] methods;
+
+  protected ServiceSkeleton(@NonNull Method[] methods) {
+    this.methods = methods;
+  }
+
+  @SneakyThrows
+  protected static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+    return type.getMethod(name, parameterTypes);
+  }
+
+  /**
+   * @return the index of the method for {@link #invoke(int, ParameterArray)}, or -1 if not dispatched by the skeleton
+   */
+  int indexOf(Method method) {
+    for (int i = 0; i < methods.length; ++i) {
+      if (methods[i].equals(method)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The caller must ensure the parameters match the method of the index.
+   */
+  public abstract Future<?> invoke(int index, ParameterArray parameters) throws Throwable;
+}
@@ -0,0 +1,115 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.InvokeSpec;
+import com.github.rpc0.invoke.ParameterArray;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare resolving the method handle per request (the former lookup) with the precomputed dispatch table.
+ * <pre>
+ * Benchmark                                 Mode  Cnt     Score      Error  Units
+ * ServiceLookupBenchmark.dispatchTable      avgt    5    17.078 ±   15.011  ns/op
+ * ServiceLookupBenchmark.resolvePerRequest  avgt    5  1940.330 ± 2024.185  ns/op
+ * </pre>
+ *
+ * @author fishzhao
+ * @since 2022-03-02
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceLookupBenchmark {
+
+  private Map<String, Object> serviceMap;
+  private ServiceLookup serviceLookup;
+  private InvokeSpec[] invokeSpecs;
+  private int index;
+
+  @Setup
+  public void setup() {
+    EchoService echoService = new EchoServiceImpl();
+    serviceMap = ImmutableMap.of(EchoService.class.getTypeName(), echoService);
+    serviceLookup = ServiceLookup.create(ImmutableMap.of(EchoService.class, echoService));
+    invokeSpecs = new InvokeSpec[]{
+            invokeSpec("echo", MethodType.methodType(String.class, String.class)),
+            invokeSpec("add", MethodType.methodType(Double.class, Double.class, Double.class)),
+            invokeSpec("add", MethodType.methodType(Double.class, Object[].class))
+    };
+    index = 0;
+  }
+
+  private InvokeSpec invokeSpec(String methodName, MethodType methodType) {
+    return new InvokeSpec(
+            0L,
+            System.currentTimeMillis(),
+            EchoService.class.getTypeName(),
+            methodName,
+            methodType,
+            ParameterArray.create()
+    );
+  }
+
+  private InvokeSpec next() {
+    if (index >= invokeSpecs.length) {
+      index = 0;
+    }
+    return invokeSpecs[index++];
+  }
+
+  @Benchmark
+  public MethodHandle resolvePerRequest() throws Throwable {
+    InvokeSpec invokeSpec = next();
+    Object service = serviceMap.get(invokeSpec.getCallSiteClassName());
+    return MethodHandles.publicLookup()
+            .findVirtual(service.getClass(),
+                    invokeSpec.getMethodName(),
+                    MethodType.methodType(Future.class, invokeSpec.getMethodType().parameterList()))
+            .bindTo(service);
+  }
+
+  @Benchmark
+  public ServiceMethod dispatchTable() {
+    return serviceLookup.lookup(next());
+  }
+
+  public interface EchoService {
+
+    Future<String> echo(String s);
+
+    Future<Double> add(Double a, Double b);
+
+    Future<Double> add(Object[] doubles);
+  }
+
+  public static final class EchoServiceImpl implements EchoService {
+
+    @Override
+    public Future<String> echo(String s) {
+      return Future.succeededFuture(s);
+    }
+
+    @Override
+    public Future<Double> add(Double a, Double b) {
+      return Future.succeededFuture(a + b);
+    }
+
+    @Override
+    public Future<Double> add(Object[] doubles) {
+      return Future.succeededFuture(0D);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.rpc0.server;
+
+import com.github.rpc0.invoke.ParameterArray;
+import com.github.rpc0.server.ServiceLookupBenchmark.EchoService;
+import com.github.rpc0.server.ServiceLookupBenchmark.EchoServiceImpl;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare invoking a service method through the spread method handle with the (generated) skeleton.
+ * <pre>
+ * Benchmark                              Mode  Cnt   Score   Error  Units
+ * ServiceSkeletonBenchmark.methodHandle  avgt    5  17.817 ± 0.993  ns/op
+ * ServiceSkeletonBenchmark.skeleton      avgt    5  13.142 ± 8.242  ns/op
+ * </pre>
+ *
+ * @author fishzhao
+ * @since 2022-03-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceSkeletonBenchmark {
+
+  private ServiceMethod methodHandleMethod;
+  private ServiceMethod skeletonMethod;
+  private ParameterArray parameters;
+
+  @Setup
+  public void setup() {
+    EchoService echoService = new EchoServiceImpl();
+    MethodType methodType = MethodType.methodType(Double.class, Double.class, Double.class);
+    methodHandleMethod = ServiceLookup.create(ImmutableMap.of(EchoService.class, echoService))
+            .lookup(EchoService.class.getTypeName(), "add", methodType);
+    skeletonMethod = ServiceLookup.create(ImmutableMap.of(EchoService.class, echoService),
+                    ImmutableMap.of(EchoService.class, new EchoServiceSkeleton(echoService)))
+            .lookup(EchoService.class.getTypeName(), "add", methodType);
+    parameters = ParameterArray.wrap(new Object[]{1D, 2D});
+  }
+
+  @Benchmark
+  public Future<?> methodHandle() throws Throwable {
+    return methodHandleMethod.invoke(parameters);
+  }
+
+  @Benchmark
+  public Future<?> skeleton() throws Throwable {
+    return skeletonMethod.invoke(parameters);
+  }
+
+  // what vertx-rpc0-processor generates for EchoService
+  public static final class EchoServiceSkeleton extends ServiceSkeleton {
+
+    private static final Method[] METHODS = {
+            method(EchoService.class, "echo", String.class),
+            method(EchoService.class, "add", Double.class, Double.class),
+            method(EchoService.class, "add", Object[].class),
+    };
+
+    private final EchoService service;
+
+    public EchoServiceSkeleton(EchoService service) {
+      super(METHODS);
+      this.service = service;
+    }
+
+    @Override
+    public Future<?> invoke(int index, ParameterArray parameters) {
+      switch (index) {
+        case 0:
+          return service.echo((String) parameters.get(0));
+        case 1:
+          return service.add((Double) parameters.get(0), (Double) parameters.get(1));
+        case 2:
+          return service.add((Object[]) parameters.get(0));
+        default:
+          throw new IndexOutOfBoundsException("No method of index: " + index);
+      }
+    }
+  }
+}